@@ -2,25 +2,30 @@ package walknroll.zoodini.controllers;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
 import com.badlogic.gdx.ai.pfa.GraphPath;
 import com.badlogic.gdx.ai.pfa.Heuristic;
-import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 
 import edu.cornell.gdiac.graphics.SpriteBatch;
+import walknroll.zoodini.controllers.aitools.FlowField;
 import walknroll.zoodini.controllers.aitools.ManhattanHeuristic;
+import walknroll.zoodini.controllers.aitools.PathCache;
+import walknroll.zoodini.controllers.aitools.PathRequestScheduler;
+import walknroll.zoodini.controllers.aitools.PathSmoother;
+import walknroll.zoodini.controllers.aitools.PatrolRouteTable;
 import walknroll.zoodini.controllers.aitools.TileGraph;
 import walknroll.zoodini.controllers.aitools.TileNode;
 import walknroll.zoodini.models.GameLevel;
-import walknroll.zoodini.models.entities.Avatar;
 import walknroll.zoodini.models.entities.Guard;
 import walknroll.zoodini.models.entities.PlayableAvatar;
 import walknroll.zoodini.utils.DebugPrinter;
-import walknroll.zoodini.utils.enums.AvatarType;
 
 /**
  * Controller class that manages the AI behavior for guard entities.
@@ -38,8 +43,9 @@ public class GuardAIController {
     private Vector2 distractPosition;
     /** Position of the last location of the player (after they are under camera) */
     private Vector2 cameraAlertPosition;
-    /** Current state of the finite state machine */
-    private GuardState currState;
+    /** The system holding this guard's per-tick state, and the guard's number in it */
+    private GuardSystem system;
+    private int id;
     /** Waypoints for the guard to patrol */
     private Vector2[] waypoints;
     /** Current waypoint index */
@@ -47,33 +53,80 @@ public class GuardAIController {
     /** Temporary distraction flag */
     private boolean tempDistract;
 
-    private long ticks;
+    private final long STATE_CHANGE_COOLDOWN = 10;
 
-    private long lastStateChangeTime = 0;
+    private final float ARRIVAL_DISTANCE = 1f;
 
-    private final long STATE_CHANGE_COOLDOWN = 10;
+    /** How close the guard needs to be to a patrol route corner to move on to the next one */
+    private static final float CORNER_ARRIVAL_DISTANCE = 0.5f;
 
-    private float CAT_MEOW_RADIUS;
+    /** How far the guard may drift from its patrol route before walking back into the loop */
+    private static final float ROUTE_TOLERANCE = 1f;
 
-    private final float ARRIVAL_DISTANCE = 1f;
+    /** How many tiles down a distance field the guard looks for the furthest one in sight */
+    private static final int MAX_FIELD_LOOKAHEAD = 8;
 
     /** Minimum time to stay in a state before changing */
     private static final int STATE_CHANGE_THRESHOLD = 20;
 
-    private SoundController soundController;
+    /** Suspicion at which the guard gives chase */
+    private static final float MAX_SUS_LEVEL = 100f;
+    /** Suspicion at which the guard becomes suspicious */
+    static final float SUS_THRESHOLD = 5f;
+    /** Ticks a chasing guard keeps going after losing sight of its target */
+    private static final float DEAGGRO_PERIOD = 60f;
+    /** Same, for a guard alerted by a camera; longer than DEAGGRO_PERIOD */
+    private static final float ALERT_DEAGGRO_PERIOD = 300f;
 
-    /** Graph representation of the game */
-    private TileGraph tileGraph;
-    private IndexedAStarPathFinder<TileNode> pathFinder;
+    /** The states by ordinal, as stored in the guard system */
+    private static final GuardState[] STATES = GuardState.values();
 
-    private Vector2 nextTargetLocation;
+    private SoundController soundController;
 
-    // Looking around behavior variables
+    /** Graph representation of the game */
+    private TileGraph<TileNode> tileGraph;
+    /** Queue that runs this guard's path searches within the per-frame budget */
+    private final PathRequestScheduler scheduler;
+    /** Last computed path, reused until the goal, the graph or the guard's position invalidates it */
+    private final PathCache pathCache;
+    /** Patrol paths precomputed at level load */
+    private final PatrolRouteTable patrolRoutes;
+    /** Whether the guard is currently following its precomputed patrol route */
+    private boolean onPatrolRoute;
+    /** Index of the corner the guard is heading to on the current route segment */
+    private int routeCorner;
+    /** String-pulls searched paths for this guard's size */
+    private final PathSmoother pathSmoother;
+    /** The path corner the guard is walking towards */
+    private final Vector2 pathCorner = new Vector2();
+
+    /** Start and end of the route leg the guard is currently walking */
+    private final Vector2 routeLegStart = new Vector2();
+    private final Vector2 routeLegEnd = new Vector2();
+    /** The furthest distance field tile in sight, and the tile being tested after it */
+    private final Vector2 fieldCorner = new Vector2();
+    private final Vector2 fieldProbe = new Vector2();
+    /** Distance fields towards each avatar, shared by all guards chasing it */
+    private final Map<PlayableAvatar, FlowField> chaseFields;
+
+    /** The guard's next target, copied out of the guard system for callers that want a vector */
+    private final Vector2 nextTargetLocation = new Vector2();
+
+    /** Whether a meow reached the guard since the last update, and where the cat was */
+    private boolean heardMeow;
+    private final Vector2 meowPosition = new Vector2();
+    /** Where the avatar was when a camera last raised the alarm for this guard */
+    private final Vector2 alarmPosition = new Vector2();
+
+    /** Effects of the last decide() that apply() has yet to carry out */
+    private GuardState enteredState;
+    private boolean lookTurned;
+    /** Avatar positions during decide(), or null */
+    private GuardSystem.Snapshot snapshot;
+
+    // Looking around behavior variables; the timers and direction are kept by the guard system
     private float lookAroundDuration = 3.0f;  // How long guard looks around in seconds
-    private float currentLookTime = 0.0f;     // Current time spent looking around
-    private float lookDirection = 1.0f;       // 1.0 for right, -1.0 for left
     private float lookChangeTime = 1.0f;      // Time before changing look direction
-    private float currentLookChangeTime = 0f; // Current time spent in current look direction
 
 
     /**
@@ -82,74 +135,175 @@ public class GuardAIController {
      * @param guard     The guard entity that this controller will manage
      * @param level     The game level containing relevant game state information
      * @param tileGraph The graph representation of the level for pathfinding
+     * @param patrolRoutes The precomputed patrol routes of this guard
+     * @param chaseFields  The shared distance fields towards each avatar
+     * @param scheduler    The queue to submit path searches to
      */
-    public GuardAIController(Guard guard, GameLevel level, TileGraph<TileNode> tileGraph) {
+    public GuardAIController(Guard guard, GameLevel level, TileGraph<TileNode> tileGraph,
+                             PatrolRouteTable patrolRoutes, Map<PlayableAvatar, FlowField> chaseFields,
+                             PathRequestScheduler scheduler) {
         this.guard = guard;
         this.level = level;
-        this.currState = GuardState.PATROL;
         this.waypoints = guard.getPatrolPoints();
         this.currentWaypointIndex = 0;
         this.tileGraph = tileGraph;
-        this.ticks = 0L;
         this.distractPosition = new Vector2(0, 0);
         this.cameraAlertPosition = new Vector2(0, 0);
-        this.pathFinder = new IndexedAStarPathFinder<>(tileGraph);
-        this.nextTargetLocation = new Vector2(0, 0);
-        this.CAT_MEOW_RADIUS = level.isCatPresent() ? level.getCat().getAbilityRange() : 0;
+        this.scheduler = scheduler;
+        this.pathCache = new PathCache();
+        this.pathSmoother = new PathSmoother(tileGraph, guard.getRadius());
+        this.patrolRoutes = patrolRoutes;
+        this.onPatrolRoute = false;
+        this.chaseFields = chaseFields;
         this.soundController = SoundController.getInstance();
 
         this.guard.resetState();
-        // Otherwise, stay in PATROL state
-        if (waypoints.length <= 1) {
-            guard.setIdle(true);
-        }
     }
 
     /**
-     * Helper function to retrieve the currently active player avatar.
+     * Gives this controller its slot in the guard system, which holds the guard's
+     * suspicion, state, timers, target and flags, and resets them. Called when the guard
+     * is added to the system.
      *
-     * @return The active player avatar from the game level
+     * @param system The guard system
+     * @param id     The number of the guard in the system
      */
-    private Avatar getActivePlayer() {
-        return level.getAvatar();
+    void bind(GuardSystem system, int id) {
+        this.system = system;
+        this.id = id;
+        system.susLevels[id] = 0;
+        system.deAggroTimers[id] = 0;
+        system.states[id] = (byte) GuardState.PATROL.ordinal();
+        system.stateTicks[id] = 0;
+        system.lookTimes[id] = 0;
+        system.lookChangeTimes[id] = 0;
+        system.lookDirections[id] = 1;
+        system.targetXs[id] = 0;
+        system.targetYs[id] = 0;
+        system.seenPlayers[id] = null;
+        system.aggroTargets[id] = null;
+        system.agroed[id] = false;
+        system.meowed[id] = false;
+        system.cameraAlerted[id] = false;
+        // A guard with a single waypoint stands at its post
+        system.idle[id] = waypoints.length <= 1;
+        system.lookingAround[id] = false;
+        system.inkBlindTimers[id] = 0;
+    }
+
+    /** Returns the current state of the state machine. */
+    private GuardState state() {
+        return STATES[system.states[id]];
+    }
+
+    private void setState(GuardState state) {
+        system.states[id] = (byte) state.ordinal();
+    }
+
+    /** Returns the guard's suspicion, from 0 to {@link #MAX_SUS_LEVEL}. */
+    public float getSusLevel() {
+        return system.susLevels[id];
+    }
+
+    /** Returns whether the guard's suspicion has reached the threshold for being suspicious. */
+    public boolean isSus() {
+        return system.susLevels[id] >= SUS_THRESHOLD;
+    }
+
+    private boolean isMaxSusLevel() {
+        return system.susLevels[id] == MAX_SUS_LEVEL;
+    }
+
+    private void setSusLevel(float susLevel) {
+        system.susLevels[id] = MathUtils.clamp(susLevel, 0, MAX_SUS_LEVEL);
+    }
+
+    private void deltaSusLevel(float delta) {
+        setSusLevel(system.susLevels[id] + delta);
+    }
+
+    private boolean checkDeAggroed() {
+        return system.deAggroTimers[id] <= 0;
+    }
+
+    private void deltaDeAggroTimer(float delta) {
+        system.deAggroTimers[id] = MathUtils.clamp(system.deAggroTimers[id] + delta, 0, DEAGGRO_PERIOD);
+    }
+
+    /**
+     * Starts the de-aggro timer, for longer if the guard was alerted by a camera.
+     */
+    private void startDeAggroTimer() {
+        system.deAggroTimers[id] = system.cameraAlerted[id] ? ALERT_DEAGGRO_PERIOD : DEAGGRO_PERIOD;
     }
 
     /**
      * Helper function that checks if a distraction from the cat's ability has
      * occurred.
      *
-     * @return true if the cat player has used its distraction ability, false
+     * @return true if a meow reached the guard since the last update, false
      *         otherwise
      */
     private boolean didDistractionOccur() {
-        float guardToPlayerDistance = guard.getPosition().dst(getCatPosition());
-        return (getActivePlayer().getAvatarType() == AvatarType.CAT &&
-                level.getCat().didJustMeow() &&
-                guardToPlayerDistance <= CAT_MEOW_RADIUS);
+        return heardMeow;
     }
 
-    public Vector2 getCameraAlertPosition() {
-        return cameraAlertPosition;
+    /**
+     * Reacts to a stimulus delivered by the {@link StimulusBus}. Alarms and ink take
+     * effect on the guard right away; the state machine acts on what was received at the
+     * next {@link #decide}.
+     *
+     * @param stimulus The stimulus, which is only valid during this call
+     */
+    public void receive(StimulusBus.Stimulus stimulus) {
+        switch (stimulus.getType()) {
+            case MEOW:
+                heardMeow = true;
+                meowPosition.set(stimulus.getPosition());
+                break;
+            case CAMERA_ALARM:
+                PlayableAvatar detectedPlayer = stimulus.getSource();
+                system.aggroTargets[id] = detectedPlayer;
+                system.cameraAlerted[id] = true;
+                if (detectedPlayer != null) {
+                    alarmPosition.set(detectedPlayer.getPosition());
+                } else {
+                    alarmPosition.set(stimulus.getPosition());
+                }
+                break;
+            case INK_HIT:
+                applyInkEffect();
+                break;
+        }
     }
 
-    private Vector2 findCameraAlertPosition() {
-        PlayableAvatar activePlayer = level.getAvatar();
-        if (activePlayer != null && activePlayer.isUnderCamera()){
-            return activePlayer.getPosition();
-        }
-        PlayableAvatar inactivePlayer = level.getInactiveAvatar();
-        if (inactivePlayer != null && inactivePlayer.isUnderCamera()){
-            return inactivePlayer.getPosition();
-        }
-        assert activePlayer != null;
-        return activePlayer.getPosition();
+    /** Returns whether stimuli were received that the next update has yet to act on. */
+    public boolean hasStimuli() {
+        return heardMeow;
     }
 
-    private Vector2 getCatPosition() {
-        if (level.getCat() != null) {
-            return level.getCat().getPosition();
-        }
-        return new Vector2(0, 0);
+    private void applyInkEffect() {
+        DebugPrinter.println("Guard hit by ink!");
+        // Set ink effect duration (in seconds)
+        final float INK_EFFECT_DURATION = 5.0f;
+
+        // Store original vision parameters and apply reduction
+        system.inkBlindTimers[id] = INK_EFFECT_DURATION;
+        guard.setInkBlinded(true);
+
+        final float MIN_VIEW_DISTANCE = 2f;
+        final float MIN_FOV = 40f;
+
+        // Reduce the view distance and FOV angle with minimum thresholds
+        float reducedViewDistance = Math.max(guard.getViewDistance() * 0.6f, MIN_VIEW_DISTANCE);
+        float reducedFov = Math.max(guard.getFov() * 0.6f, MIN_FOV);
+        // Reduce the view distance and FOV angle
+        guard.setTempViewDistance(reducedViewDistance); // 60% reduction
+        guard.setTempFov(reducedFov); // 60% reduction
+    }
+
+    public Vector2 getCameraAlertPosition() {
+        return cameraAlertPosition;
     }
 
     public Vector2 getDistractPosition() {
@@ -157,9 +311,9 @@ public class GuardAIController {
     }
 
     /**
-     * Helper function to find the nearest waypoint to the guard's current position.
+     * Helper function to find the waypoint the guard can walk to soonest.
      * Updates the currentWaypointIndex to match the nearest waypoint.
-     * This is used in the RETURN state to find the nearest waypoint to return to.
+     * This is used when returning to PATROL to find the nearest waypoint to return to.
      *
      * @return The Vector2 position of the nearest patrol waypoint
      */
@@ -167,20 +321,8 @@ public class GuardAIController {
         if (waypoints.length == 0) {
             return guard.getPosition();
         }
-
-        Vector2 nearest = waypoints[0];
-        float minDistance = guard.getPosition().dst(nearest);
-
-        for (int i = 1; i < waypoints.length; i++) {
-            float distance = guard.getPosition().dst(waypoints[i]);
-            if (distance < minDistance) {
-                minDistance = distance;
-                nearest = waypoints[i];
-                currentWaypointIndex = i; // Update the current waypoint index
-            }
-        }
-
-        return nearest;
+        currentWaypointIndex = patrolRoutes.getNearestWaypoint(guard.getPosition());
+        return waypoints[currentWaypointIndex];
     }
 
     /***
@@ -199,41 +341,43 @@ public class GuardAIController {
 
     /**
      * Helper function to update the guard's suspicion level based on its current
-     * state.
+     * state, for the given number of ticks.
      * Increases suspicion if the guard is in line of sight of the player, otherwise
      * decreases it.
      * Also handles de-aggro timer when the guard is not in line of sight and not
      * under camera.
      */
-    private void updateSusLevel() {
+    private void updateSusLevel(int ticks) {
+        GuardState currState = state();
         if (currState != GuardState.CHASE) { // Only update when not chasing
-            if (guard.isSeesPlayer() && guard.getSeenPlayer() != null) { // In guard's line of sight
+            PlayableAvatar seenPlayer = system.seenPlayers[id];
+            if (seenPlayer != null) { // In guard's line of sight
 
                 // If guard is alerted by a camera, increase suspicion to max
                 // otherwise, calculate the increase based on distance to player
                 int susIncrease = currState == GuardState.AlERTED
-                        ? (int) guard.getMaxSusLevel()
-                        : guard.calculateSusIncrease(guard.getSeenPlayer().getPosition());
+                        ? (int) MAX_SUS_LEVEL
+                        : guard.calculateSusIncrease(positionOf(seenPlayer));
 
-                guard.deltaSusLevel(susIncrease); // Increase suspicion
+                deltaSusLevel(susIncrease * ticks); // Increase suspicion
             } else {
                 // Only decrease suspicion if not in ALERTED state
                 if (currState != GuardState.AlERTED) {
-                    guard.deltaSusLevel(-0.75f); // Decrease suspicion
+                    deltaSusLevel(-0.75f * ticks); // Decrease suspicion
                 }
             }
         } else { // Guard is chasing
             // When player is under camera and guard is in CHASE state
-            if (targetPlayer != null && targetPlayer.isUnderCamera()) {
+            if (targetPlayer != null && isUnderCamera(targetPlayer)) {
                 // Don't change deaggroTimer if under camera
-                guard.deltaDeAggroTimer(0);
+                deltaDeAggroTimer(0);
             }
             // Not under camera and not deaggroed, normal de-aggro logic
-            else if (!guard.isSeesPlayer()) {
-                guard.deltaDeAggroTimer(-1); // Normal decrease
+            else if (system.seenPlayers[id] == null) {
+                deltaDeAggroTimer(-ticks); // Normal decrease
             } else {
                 // Guard sees player directly, reset de-aggro timer
-                guard.deltaDeAggroTimer(2);
+                deltaDeAggroTimer(2 * ticks);
             }
         }
     }
@@ -242,60 +386,56 @@ public class GuardAIController {
      * Updates the guard's state based on current conditions and state priority.
      */
     private void updateGuardState() {
+        GuardState currState = state();
         // First check for max suspicion level, which always leads to CHASE (highest
         // priority)
-        if (guard.isMaxSusLevel() && currState != GuardState.CHASE) {
+        if (isMaxSusLevel() && currState != GuardState.CHASE) {
             changeState(GuardState.CHASE);
-            guard.startDeAggroTimer();
+            startDeAggroTimer();
             return;
         }
 
-        guard.setLookingAround(currState == GuardState.LOOKING_AROUND);
+        system.lookingAround[id] = currState == GuardState.LOOKING_AROUND;
         GuardState potentialState = currState;
         switch (currState) {
             case CHASE:
                 // If player deaggros the guard; CHASE -> PATROL
                 // This happens if the guard is not in line of sight and the deAggroTimer is 0
-                if (guard.checkDeAggroed() || targetPlayer.isInvincible()) {
+                if (checkDeAggroed() || isInvincible(targetPlayer)) {
                     potentialState = GuardState.SUSPICIOUS;
                     // If guard was previously alerted by a camera
-                    guard.setCameraAlerted(false);
-                    lastStateChangeTime = ticks;
+                    system.cameraAlerted[id] = false;
                 }
                 // Stay in CHASE state -> Chase player (Handled in setNextTargetLocation)
                 break;
             case SUSPICIOUS:
                 // Suspicion level is below threshold; SUSPICIOUS -> PATROL
                 // TODO: Experimenting guard leaving sus state only when sus level is 0
-                if (!guard.isSus()) {
+                if (!isSus()) {
                     // if (guard.getSusLevel() == 0) {
 
                     potentialState = GuardState.PATROL;
-                    lastStateChangeTime = ticks;
                 }
                 // Player under camera; SUSPICIOUS -> ALERTED
-                else if (guard.isCameraAlerted()) {
+                else if (system.cameraAlerted[id]) {
                     potentialState = GuardState.AlERTED;
-                    guard.startDeAggroTimer();
-                    guard.setMaxSusLevel();
-                    cameraAlertPosition.set(findCameraAlertPosition());
-                    lastStateChangeTime = ticks;
+                    startDeAggroTimer();
+                    setSusLevel(MAX_SUS_LEVEL);
+                    cameraAlertPosition.set(alarmPosition);
                 }
                 break;
             case AlERTED:
                 // If guard has reached camera location; ALERTED -> PATROL
                 if (hasReachedTargetLocation(cameraAlertPosition)) {
                     potentialState = GuardState.PATROL;
-                    guard.setCameraAlerted(false);
-                    lastStateChangeTime = ticks;
+                    system.cameraAlerted[id] = false;
                 }
                 // Guard has not reached camera location, sus level is above threshold; ALERTED
                 // -> SUSPICIOUS
-                else if (guard.isSus()) {
+                else if (isSus()) {
                     potentialState = GuardState.SUSPICIOUS;
-                    guard.setCameraAlerted(true); // TODO: Make this false (if we want guard to lose momentum after
-                                                  // spotting)
-                    lastStateChangeTime = ticks;
+                    system.cameraAlerted[id] = true; // TODO: Make this false (if we want guard to lose momentum after
+                                                     // spotting)
                 }
                 break;
             case DISTRACTED:
@@ -303,69 +443,56 @@ public class GuardAIController {
                 if (hasReachedTargetLocation(distractPosition)) {
                     potentialState = GuardState.LOOKING_AROUND;
                     // Initialize the looking around timer
-                    currentLookTime = 0.0f;
-                    currentLookChangeTime = 0f;
-                    lookDirection = 1.0f;
-                    guard.setMeow(false);
-                    lastStateChangeTime = ticks;
+                    system.lookTimes[id] = 0;
+                    system.lookChangeTimes[id] = 0;
+                    system.lookDirections[id] = 1;
+                    system.meowed[id] = false;
                 }
                 // Guard has not reached meow location, sus level is above threshold; DISTRACTED
                 // -> SUSPICIOUS
-                else if (guard.isSus()) {
+                else if (isSus()) {
                     potentialState = GuardState.SUSPICIOUS;
-                    guard.setMeow(false);
-                    lastStateChangeTime = ticks;
-                } else if (guard.isCameraAlerted()) {
+                    system.meowed[id] = false;
+                } else if (system.cameraAlerted[id]) {
                     potentialState = GuardState.AlERTED;
-                    guard.setCameraAlerted(true);
-                    guard.setMeow(false);
-                    Vector2 playerPosition = findCameraAlertPosition();
-                    cameraAlertPosition.set(tileGraph.getValidTileCoords(playerPosition));
-                    lastStateChangeTime = ticks;
+                    system.cameraAlerted[id] = true;
+                    system.meowed[id] = false;
+                    tileGraph.getValidTileCoords(alarmPosition, cameraAlertPosition);
                 }
                 // Gar meows again -> should update distractPosition
                 else if (didDistractionOccur()) {
-                    guard.setMeow(true);
-                    Vector2 playerPosition = getActivePlayer().getPosition();
-                    distractPosition.set(tileGraph.getValidTileCoords(playerPosition));
-                    lastStateChangeTime = ticks;
+                    system.meowed[id] = true;
+                    tileGraph.getValidTileCoords(meowPosition, distractPosition);
                 }
                 break;
             case LOOKING_AROUND:
                 // Check for higher priority states first (same as in DISTRACTED)
-                if (guard.isSus()) {
+                if (isSus()) {
                     potentialState = GuardState.SUSPICIOUS;
-                    guard.setMeow(false);
-                    lastStateChangeTime = ticks;
+                    system.meowed[id] = false;
                 }
-                else if (guard.isCameraAlerted()) {
+                else if (system.cameraAlerted[id]) {
                     potentialState = GuardState.AlERTED;
-                    guard.setCameraAlerted(true);
-                    guard.setMeow(false);
-                    Vector2 playerPosition = findCameraAlertPosition();
-                    cameraAlertPosition.set(tileGraph.getValidTileCoords(playerPosition));
-                    lastStateChangeTime = ticks;
+                    system.cameraAlerted[id] = true;
+                    system.meowed[id] = false;
+                    tileGraph.getValidTileCoords(alarmPosition, cameraAlertPosition);
                 }
                 else if (didDistractionOccur()) {
                     // Another meow can interrupt looking around
                     potentialState = GuardState.DISTRACTED;
-                    guard.setMeow(true);
-                    Vector2 playerPosition = getActivePlayer().getPosition();
-                    distractPosition.set(tileGraph.getValidTileCoords(playerPosition));
-                    lastStateChangeTime = ticks;
+                    system.meowed[id] = true;
+                    tileGraph.getValidTileCoords(meowPosition, distractPosition);
                 }
                 // After looking around time is up, go back to PATROL state
-                else if (currentLookTime >= lookAroundDuration) {
+                else if (system.lookTimes[id] >= lookAroundDuration) {
                     potentialState = GuardState.PATROL;
-                    guard.setMeow(false);
-                    lastStateChangeTime = ticks;
+                    system.meowed[id] = false;
                 }
                 break;
             case PATROL:
                 // Guard is not max sus level but is suspicious; PATROL -> SUSPICIOUS
-                if (guard.isSus()) {
+                if (isSus()) {
                     potentialState = GuardState.SUSPICIOUS;
-                    lastStateChangeTime = ticks;
                 }
                 // Guard is not sus and is meowed; PATROL -> DISTRACTED
                 // Due to ordering of checks, this will only happen if the guard is not
@@ -373,44 +500,41 @@ public class GuardAIController {
                 // This makes sense since we don't want the guard to deagrro by being meowed
                 else if (didDistractionOccur()) {
                     potentialState = GuardState.DISTRACTED;
-                    if (!guard.isMeowed()) {
-                        guard.setSusLevel(guard.getSusThreshold() - 1);
+                    if (!system.meowed[id]) {
+                        setSusLevel(SUS_THRESHOLD - 1);
                     }
-                    guard.setMeow(true);
-                    Vector2 playerPosition = getActivePlayer().getPosition();
-                    distractPosition.set(tileGraph.getValidTileCoords(playerPosition));
-                    lastStateChangeTime = ticks;
+                    system.meowed[id] = true;
+                    tileGraph.getValidTileCoords(meowPosition, distractPosition);
                 }
                 // Guard is not sus, not meowed, but player under camera; PATROL -> ALERTED
                 // Due to ordering of checks, this will only happen if the guard is not
                 // suspicious
                 // Guard shouldn't deaggro if other player touches camera
-                else if (guard.isCameraAlerted()) {
+                else if (system.cameraAlerted[id]) {
                     potentialState = GuardState.AlERTED;
-                    guard.setCameraAlerted(true);
-                    Vector2 playerPosition = findCameraAlertPosition();
-                    cameraAlertPosition.set(tileGraph.getValidTileCoords(playerPosition));
-                    lastStateChangeTime = ticks;
+                    system.cameraAlerted[id] = true;
+                    tileGraph.getValidTileCoords(alarmPosition, cameraAlertPosition);
                 }
 
-                guard.setIdle(waypoints.length <= 1 && guard.getPosition().dst(waypoints[0]) <= 0.5f);
+                system.idle[id] = waypoints.length <= 1 && guard.getPosition().dst(waypoints[0]) <= 0.5f;
 
                 break;
             default:
                 // Should never happen, but reset to PATROL if we get an invalid state
                 currState = GuardState.PATROL;
+                setState(currState);
                 break;
         }
         if (currState != GuardState.PATROL || guard.getPosition().dst(waypoints[0]) > 0.5f) {
-            guard.setIdle(false);
+            system.idle[id] = false;
         }
 
         // Only change state if we've been in the current state long enough
         // or if we're forced to change by disabling/enabling follow
         if (potentialState != currState) {
-            if (ticks >= STATE_CHANGE_THRESHOLD || potentialState == GuardState.DISTRACTED) {
+            if (system.stateTicks[id] >= STATE_CHANGE_THRESHOLD || potentialState == GuardState.DISTRACTED) {
                 changeState(potentialState);
-                ticks = 0; // Reset counter on state change
+                system.stateTicks[id] = 0; // Reset counter on state change
             }
         } else {
             changeState(potentialState);
@@ -420,37 +544,102 @@ public class GuardAIController {
 
     private void executeLookAround(float dt) {
         // Update looking around behavior if in LOOKING_AROUND state
-        if (currState == GuardState.LOOKING_AROUND) {
-            currentLookTime += dt;
-            currentLookChangeTime += dt;
+        if (state() == GuardState.LOOKING_AROUND) {
+            system.lookTimes[id] += dt;
+            system.lookChangeTimes[id] += dt;
             // Change look direction periodically
-            if (currentLookChangeTime >= lookChangeTime) {
-                lookDirection *= -1; // Flip direction
-                currentLookChangeTime = 0;
+            if (system.lookChangeTimes[id] >= lookChangeTime) {
+                system.lookDirections[id] *= -1; // Flip direction
+                system.lookChangeTimes[id] = 0;
 
-                // Update the guard's direction for looking left and right
-                Vector2 lookDirectionVector = new Vector2(lookDirection, 0);
-                guard.setAngle(lookDirectionVector.angleRad());
+                // Turning the guard's body waits for apply(), as it touches the physics world
+                lookTurned = true;
             }
         }
     }
 
     /**
-     * Updates the guard's AI state and behavior.
-     * This is the main function that should be called each frame to progress the
-     * guard's AI.
-     * Handles suspicion level changes, state transitions, and movement target
-     * updates.
+     * First half of the guard's AI update: suspicion and the state machine. Guards far
+     * away from the action skip updates (see {@link GuardTickScheduler}); the next one
+     * then catches up as if it had run on each of the skipped ticks.
+     *
+     * This only changes this controller and its guard's slots in the system, and reads the
+     * avatars through the snapshot, so no guard's decision depends on how far the others
+     * have got (see {@link GuardSystem}). Sounds, the guard entity and anything else that
+     * touches shared state are left to {@link #apply}.
+     *
+     * @param dt       Seconds since the last update
+     * @param elapsed  Physics ticks since the last update
+     * @param snapshot The avatars as they were at the start of this tick, or null to read
+     *                 them directly
      */
-    public void update(float dt) {
-        ticks++;
+    void decide(float dt, int elapsed, GuardSystem.Snapshot snapshot) {
+        this.snapshot = snapshot;
+        system.stateTicks[id] += elapsed;
+        system.inkBlindTimers[id] = Math.max(system.inkBlindTimers[id] - dt, 0);
         executeLookAround(dt);
-        updateSusLevel();
+        updateSusLevel(elapsed);
 //        DebugPrinter.println("Guard state before: " + currState);
         updateGuardState();
 //        DebugPrinter.println("Guard state after: " + currState);
+        this.snapshot = null;
+    }
+
+    /**
+     * Second half of the guard's AI update: plays the sounds of the state entered
+     * in {@link #decide}, turns the guard and plans its movement. Guards must be applied
+     * one at a time, in a fixed order, since path planning shares caches and the
+     * request queue between guards.
+     */
+    void apply() {
+        if (lookTurned) {
+            // Update the guard's direction for looking left and right
+            Vector2 lookDirectionVector = new Vector2(system.lookDirections[id], 0);
+            guard.setAngle(lookDirectionVector.angleRad());
+            lookTurned = false;
+        }
+        if (enteredState != null) {
+            switch (enteredState) {
+                case CHASE:
+                    soundController.playGuardAlerted();
+                    break;
+                case DISTRACTED:
+                    soundController.playGuardCurious();
+                    break;
+                case AlERTED:
+                    soundController.playGuardAlerted();
+                    break;
+                case LOOKING_AROUND:
+                    soundController.playGuardCurious();
+                    break;
+                default:
+                    break;
+            }
+            enteredState = null;
+        }
         setNextTargetLocation();
+        heardMeow = false;
+        // Hand the guard what it draws
+        guard.setSuspicion(system.susLevels[id] / MAX_SUS_LEVEL);
+        guard.setCurious(system.meowed[id]);
+        guard.setIdle(system.idle[id]);
+        guard.setLookingAround(system.lookingAround[id]);
+        guard.setInkBlinded(system.inkBlindTimers[id] > 0);
+    }
+
+    /** Returns where the given avatar is this tick. */
+    private Vector2 positionOf(PlayableAvatar avatar) {
+        return snapshot != null ? snapshot.positionOf(avatar) : avatar.getPosition();
+    }
 
+    /** Returns whether a camera sees the given avatar this tick. */
+    private boolean isUnderCamera(PlayableAvatar avatar) {
+        return snapshot != null ? snapshot.isUnderCamera(avatar) : avatar.isUnderCamera();
+    }
+
+    /** Returns whether the given avatar is invincible this tick. */
+    private boolean isInvincible(PlayableAvatar avatar) {
+        return snapshot != null ? snapshot.isInvincible(avatar) : avatar.isInvincible();
     }
 
     /**
@@ -460,8 +649,7 @@ public class GuardAIController {
      *         otherwise
      */
     private boolean checkPlayerIsSpotted() {
-        // TODO: Replace with real guard.isAgroed() method
-        return this.guard.isAgroed() && guard.isMaxSusLevel();
+        return system.agroed[id] && isMaxSusLevel();
     }
 
     /**
@@ -481,7 +669,12 @@ public class GuardAIController {
      * @return The current GuardState (PATROL, CHASE, RETURN, or DISTRACTED)
      */
     public GuardState getGuardState() {
-        return currState;
+        return state();
+    }
+
+    /** Returns whether the guard is walking its patrol, undisturbed. */
+    public boolean isPatrolling() {
+        return state() == GuardState.PATROL;
     }
 
 
@@ -495,48 +688,163 @@ public class GuardAIController {
      * @return The next position the guard should move towards
      */
     private Vector2 getNextWaypointLocation(Vector2 targetLocation) {
-        List<TileNode> path = tileGraph.getPath(guard.getPosition().cpy(), targetLocation.cpy(), pathFinder);
+        List<TileNode> path = pathCache.getPath(tileGraph, guard.getPosition(), targetLocation,
+            scheduler, getPathPriority());
         if (path.isEmpty()) {
+            if (pathCache.isPending()) {
+                // Head straight for the target until the search has been served
+                return pathCorner.set(targetLocation);
+            }
+            GuardState currState = state();
             if (currState == GuardState.CHASE) {
-                return targetPlayer.getPosition().cpy();
+                return pathCorner.set(targetPlayer.getPosition());
             }
             // Guard alerted by camera but can't reach player
             if (currState == GuardState.AlERTED) {
-                currState = GuardState.PATROL;
-                guard.setCameraAlerted(false);
+                setState(GuardState.PATROL);
+                system.cameraAlerted[id] = false;
                 return waypoints[currentWaypointIndex];
             }
             // Guard meowed but can't reach player
             if (currState == GuardState.DISTRACTED) {
-                currState = GuardState.PATROL;
-                guard.setMeow(false);
+                setState(GuardState.PATROL);
+                system.meowed[id] = false;
                 return waypoints[currentWaypointIndex];
             }
-            return guard.getPosition().cpy();
+            return pathCorner.set(guard.getPosition());
         }
 
-        // Convert path to world coordinates
-        List<Vector2> worldPath = new ArrayList<>();
-        for (TileNode node : path) {
-            worldPath.add(tileGraph.tileToWorld(node));
+        // Head for the next corner of the string-pulled path
+        return pathCache.getNextCorner(tileGraph, guard.getPosition(), pathSmoother,
+            CORNER_ARRIVAL_DISTANCE, pathCorner);
+    }
+
+    /**
+     * Helper function that returns how urgently this guard needs a new path in its
+     * current state. Chasing guards are served before alerted ones, and those before
+     * patrolling ones.
+     */
+    private PathRequestScheduler.Priority getPathPriority() {
+        switch (state()) {
+            case CHASE:
+            case SUSPICIOUS:
+                return PathRequestScheduler.Priority.HIGH;
+            case AlERTED:
+            case DISTRACTED:
+                return PathRequestScheduler.Priority.NORMAL;
+            default:
+                return PathRequestScheduler.Priority.LOW;
         }
+    }
 
-        int pathIndex = 0;
+    /**
+     * Helper function that determines the next location while going after an avatar.
+     * Instead of searching from this guard, follows the distance field towards the
+     * avatar that is shared by every guard after it, as far as the guard can see.
+     *
+     * @param target The avatar the guard is going after
+     * @return The next position the guard should move towards
+     */
+    private Vector2 getNextChaseLocation(PlayableAvatar target) {
+        FlowField field = chaseFields.get(target);
+        if (field == null) {
+            return getNextWaypointLocation(target.getPosition());
+        }
+        field.update(target.getPosition());
 
-        // Furthest visible waypoint
-        int furthestVisibleIndex = pathIndex;
+        Vector2 corner = followField(field);
+        if (corner == null) {
+            // Already on the avatar's tile, or no way to get there
+            if (state() == GuardState.CHASE) {
+                return fieldCorner.set(target.getPosition());
+            }
+            return fieldCorner.set(guard.getPosition());
+        }
+        return corner;
+    }
 
-        // Try to find a waypoint further along the path that we can move to directly
-        for (int i = pathIndex + 1; i < worldPath.size(); i++) {
-            if (tileGraph.hasEnhancedLineOfSight(guard.getPosition(), worldPath.get(i))) {
-                furthestVisibleIndex = i;
-            } else {
-                // Stop at the first waypoint we can't see directly
+    /**
+     * Helper function that walks down a distance field from the guard's tile for as long
+     * as the tiles are in direct line of sight. The guard aims again every tick, so a
+     * few tiles ahead is as far as it needs to see.
+     *
+     * @param field The distance field to follow
+     * @return The furthest tile in sight, or null if the guard is already at the
+     * field's target or cannot reach it
+     */
+    private Vector2 followField(FlowField field) {
+        TileNode tile = tileGraph.worldToTile(guard.getPosition());
+        if (tile != null && tile.isObstacle) {
+            tile = tileGraph.findNearestNonObstacleNode(guard.getPosition());
+        }
+        TileNode next = tile == null ? null : field.getNextTile(tile);
+        if (next == null) {
+            return null;
+        }
+
+        tileGraph.tileToWorld(next, fieldCorner);
+        next = field.getNextTile(next);
+        for (int i = 1; i < MAX_FIELD_LOOKAHEAD && next != null; i++) {
+            tileGraph.tileToWorld(next, fieldProbe);
+            if (!tileGraph.hasEnhancedLineOfSight(guard.getPosition(), fieldProbe)) {
                 break;
             }
+            fieldCorner.set(fieldProbe);
+            next = field.getNextTile(next);
+        }
+        return fieldCorner;
+    }
+
+    /**
+     * Helper function that starts walking the precomputed route segment leading to
+     * the current waypoint. Called when the guard arrives at a waypoint.
+     */
+    private void startPatrolSegment() {
+        onPatrolRoute = true;
+        routeCorner = 0;
+        routeLegStart.set(guard.getPosition());
+        if (patrolRoutes.getCornerCount(patrolRoutes.getSegmentTo(currentWaypointIndex)) > 0) {
+            patrolRoutes.getCorner(patrolRoutes.getSegmentTo(currentWaypointIndex), 0, routeLegEnd);
+        }
+    }
+
+    /**
+     * Helper function that determines the next location while patrolling.
+     * Follows the precomputed route between waypoints. A guard returning to its patrol,
+     * or pushed off the route, follows the waypoint's re-entry field back instead, and
+     * only searches for a path if the field cannot reach the waypoint.
+     *
+     * @return The next position the guard should move towards
+     */
+    private Vector2 getNextPatrolLocation() {
+        int segment = patrolRoutes.getSegmentTo(currentWaypointIndex);
+        int cornerCount = patrolRoutes.getCornerCount(segment);
+        if (onPatrolRoute && cornerCount > 0) {
+            while (routeCorner < cornerCount - 1
+                    && guard.getPosition().dst(routeLegEnd) < CORNER_ARRIVAL_DISTANCE) {
+                routeCorner++;
+                routeLegStart.set(routeLegEnd);
+                patrolRoutes.getCorner(segment, routeCorner, routeLegEnd);
+            }
+            if (Intersector.distanceSegmentPoint(routeLegStart, routeLegEnd, guard.getPosition()) <= ROUTE_TOLERANCE) {
+                return routeLegEnd;
+            }
+        }
+        onPatrolRoute = false;
+        Vector2 corner = followField(patrolRoutes.getEntryField(currentWaypointIndex));
+        if (corner == null) {
+            // On the waypoint's tile already, or the field has no way there
+            return getNextWaypointLocation(waypoints[currentWaypointIndex]);
         }
+        return corner;
+    }
 
-        return worldPath.get(furthestVisibleIndex);
+    /**
+     * Returns the path cache used by this controller, mainly so that hit/miss
+     * statistics can be reported in debug mode.
+     */
+    public PathCache getPathCache() {
+        return pathCache;
     }
 
     /**
@@ -546,14 +854,18 @@ public class GuardAIController {
      * states.
      */
     private void setNextTargetLocation() {
+        GuardState currState = state();
         Vector2 newTarget = null;
+        if (currState != GuardState.PATROL) {
+            onPatrolRoute = false;
+        }
 
         switch (currState) {
             case PATROL:
                 if (waypoints.length == 0) {
                     return;
                 }
-                if (guard.isIdle()) {
+                if (system.idle[id]) {
                     return;
                 }
                 // If guard reaches waypoint, move to next waypoint
@@ -561,17 +873,18 @@ public class GuardAIController {
                 // waypoint to return to after distracted or alerted.
                 if (hasReachedTargetLocation(waypoints[currentWaypointIndex])) {
                     currentWaypointIndex = (currentWaypointIndex + 1) % waypoints.length;
+                    startPatrolSegment();
                 }
                 // Guard hasn't reached waypoint, so continue to current target
-                newTarget = getNextWaypointLocation(waypoints[currentWaypointIndex]);
+                newTarget = getNextPatrolLocation();
                 break;
             case SUSPICIOUS:
                 // If guard is sus but not max sus level, slowly move towards player
                 // TODO: in order to move more slowly towards player update vector magnitude in
                 // moveGuard function in GameScene
-                targetPlayer = guard.getAggroTarget();
+                targetPlayer = system.aggroTargets[id];
                 if (targetPlayer != null) {
-                    newTarget = getNextWaypointLocation(targetPlayer.getPosition());
+                    newTarget = getNextChaseLocation(targetPlayer);
                 } else {
                     // Fall back to patrol behavior or some default position
                     newTarget = waypoints.length > 0 ? getNextWaypointLocation(waypoints[currentWaypointIndex])
@@ -579,9 +892,9 @@ public class GuardAIController {
                 }
                 break;
             case CHASE:
-                targetPlayer = guard.getAggroTarget();
+                targetPlayer = system.aggroTargets[id];
                 if (targetPlayer != null) {
-                    newTarget = getNextWaypointLocation(targetPlayer.getPosition());
+                    newTarget = getNextChaseLocation(targetPlayer);
                 } else {
                     // If no target, maybe return to patrol
                     newTarget = waypoints.length > 0 ? getNextWaypointLocation(waypoints[currentWaypointIndex])
@@ -609,32 +922,24 @@ public class GuardAIController {
                 break;
         }
 
-        nextTargetLocation = tileGraph.getValidTileCoords(newTarget);
+        tileGraph.getValidTileCoords(newTarget, nextTargetLocation);
         // nextTargetLocation = newTarget;
+        system.targetXs[id] = nextTargetLocation.x;
+        system.targetYs[id] = nextTargetLocation.y;
 
     }
 
     private void changeState(GuardState newState) {
-        if (newState != currState) {
-            switch (newState) {
-                case CHASE:
-                    soundController.playGuardAlerted();
-                    break;
-                case DISTRACTED:
-                    soundController.playGuardCurious();
-                    break;
-                case AlERTED:
-                    soundController.playGuardAlerted();
-                    break;
-                case LOOKING_AROUND:
-                    soundController.playGuardCurious();
-                    break;
-                default:
-                    break;
+        if (newState != state()) {
+            if (newState == GuardState.PATROL) {
+                // Rejoin the patrol at whichever waypoint is closest
+                findNearestWaypoint();
             }
+            // The state's sound is played in apply()
+            enteredState = newState;
         }
 
-        currState = newState;
+        setState(newState);
     }
 
     /**
@@ -643,7 +948,7 @@ public class GuardAIController {
      * @return The Vector2 position the guard is currently moving towards
      */
     public Vector2 getNextTargetLocation() {
-        return nextTargetLocation;
+        return nextTargetLocation.set(system.targetXs[id], system.targetYs[id]);
     }
 
     /**
@@ -652,14 +957,20 @@ public class GuardAIController {
      * @return A normalized Vector2 representing the movement direction
      */
     public Vector2 getMovementDirection() {
-        if (currState == GuardState.LOOKING_AROUND) {
-            return new Vector2(lookDirection, 0);
-        }
-        else if (this.nextTargetLocation == null) {
-            return Vector2.Zero;
-        } else {
-            return this.nextTargetLocation.cpy().sub(guard.getPosition()).nor();
+        return getMovementDirection(new Vector2());
+    }
+
+    /**
+     * Calculates the direction vector the guard should move in.
+     *
+     * @param out The vector to store the direction in
+     * @return out, normalized, or zero if the guard should stand still
+     */
+    public Vector2 getMovementDirection(Vector2 out) {
+        if (state() == GuardState.LOOKING_AROUND) {
+            return out.set(system.lookDirections[id], 0);
         }
+        return out.set(system.targetXs[id], system.targetYs[id]).sub(guard.getPosition()).nor();
     }
 
     /**
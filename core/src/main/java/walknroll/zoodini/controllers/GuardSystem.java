@@ -0,0 +1,363 @@
+package walknroll.zoodini.controllers;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import walknroll.zoodini.controllers.aitools.TileGraph;
+import walknroll.zoodini.controllers.aitools.TileNode;
+import walknroll.zoodini.models.GameLevel;
+import walknroll.zoodini.models.entities.Guard;
+import walknroll.zoodini.models.entities.PlayableAvatar;
+
+/**
+ * The guards of a level and their AI controllers, updated together on the physics tick.
+ *
+ * Guards are numbered in the order they are added, and the update keeps what it needs
+ * about them in arrays indexed by that number: the guard, its controller, the ticks and
+ * time its AI has skipped (see {@link GuardTickScheduler}), and the vector
+ * its movement direction is written to. The AI state that changes every tick, such as
+ * suspicion, the state machine's state, timers, targets and what the guard has seen or
+ * been told, is kept in arrays here as well; each controller reads and writes the slots
+ * of its own guard. The guard itself only gets what it draws, after every update.
+ *
+ * The AI of the guards that are due runs in two phases. First every guard decides,
+ * updating its suspicion and state machine (see {@link GuardAIController#decide}). A
+ * decision only depends on the guard's own slots, the read-only navigation graph and a
+ * snapshot of the avatars taken at the start of the tick, so no guard sees another's
+ * decision half made. Then, one guard at a time in number order, the decisions are
+ * applied: sounds are played, movement is planned and the guard is handed what it draws
+ * (see {@link GuardAIController#apply}).
+ *
+ * Both phases run on the game thread. Deciding takes a few microseconds per guard, less
+ * than handing the guards to other threads costs, and planning shares the path caches
+ * and request queue between guards.
+ */
+public class GuardSystem {
+
+    /** What the deciding guards may know about the avatars, as it was at the start of a tick */
+    public static final class Snapshot {
+        private PlayableAvatar cat;
+        private PlayableAvatar octopus;
+        private final Vector2 catPosition = new Vector2();
+        private final Vector2 octopusPosition = new Vector2();
+        private boolean catUnderCamera;
+        private boolean octopusUnderCamera;
+        private boolean catInvincible;
+        private boolean octopusInvincible;
+
+        private void capture(GameLevel level) {
+            cat = level.isCatPresent() ? level.getCat() : null;
+            octopus = level.isOctopusPresent() ? level.getOctopus() : null;
+            if (cat != null) {
+                catPosition.set(cat.getPosition());
+                catUnderCamera = cat.isUnderCamera();
+                catInvincible = cat.isInvincible();
+            }
+            if (octopus != null) {
+                octopusPosition.set(octopus.getPosition());
+                octopusUnderCamera = octopus.isUnderCamera();
+                octopusInvincible = octopus.isInvincible();
+            }
+        }
+
+        /** Returns where the given avatar was at the start of the tick. */
+        public Vector2 positionOf(PlayableAvatar avatar) {
+            if (avatar == cat) {
+                return catPosition;
+            }
+            if (avatar == octopus) {
+                return octopusPosition;
+            }
+            return avatar.getPosition();
+        }
+
+        /** Returns whether the given avatar was seen by a camera at the start of the tick. */
+        public boolean isUnderCamera(PlayableAvatar avatar) {
+            if (avatar == cat) {
+                return catUnderCamera;
+            }
+            if (avatar == octopus) {
+                return octopusUnderCamera;
+            }
+            return avatar.isUnderCamera();
+        }
+
+        /** Returns whether the given avatar was invincible at the start of the tick. */
+        public boolean isInvincible(PlayableAvatar avatar) {
+            if (avatar == cat) {
+                return catInvincible;
+            }
+            if (avatar == octopus) {
+                return octopusInvincible;
+            }
+            return avatar.isInvincible();
+        }
+    }
+
+    private final TileGraph<TileNode> graph;
+    private final Snapshot snapshot = new Snapshot();
+
+    private Guard[] guards;
+    private GuardAIController[] controllers;
+    /** Ticks and seconds each guard's AI has skipped since its last update */
+    private int[] skippedTicks;
+    private float[] skippedTime;
+    /** Whether each guard's AI runs this update */
+    private boolean[] due;
+    /** Movement direction handed to each guard every update */
+    private Vector2[] directions;
+    private int size;
+
+    /** Suspicion of each guard */
+    float[] susLevels;
+    /** Ticks each chasing guard has left before giving up */
+    float[] deAggroTimers;
+    /** State of each guard's state machine, by ordinal */
+    byte[] states;
+    /** Ticks each guard has spent in its current state */
+    int[] stateTicks;
+    /** Seconds each guard has spent looking around, and looking the current way */
+    float[] lookTimes;
+    float[] lookChangeTimes;
+    /** Way each guard looks while looking around: 1 for right, -1 for left */
+    float[] lookDirections;
+    /** Position each guard is heading for */
+    float[] targetXs;
+    float[] targetYs;
+    /** Avatar in each guard's vision cone this tick, or null */
+    PlayableAvatar[] seenPlayers;
+    /** Avatar each guard was last set on, by sight or by a camera */
+    PlayableAvatar[] aggroTargets;
+    /** Whether each guard is set on an avatar it saw */
+    boolean[] agroed;
+    /** Whether each guard is heading for, or looking around, the spot of a meow */
+    boolean[] meowed;
+    /** Whether each guard was called by a camera that saw an avatar */
+    boolean[] cameraAlerted;
+    /** Whether each guard stands at its single post, and whether it is looking around */
+    boolean[] idle;
+    boolean[] lookingAround;
+    /** Seconds each guard stays blinded by ink */
+    float[] inkBlindTimers;
+
+    /** Number of each guard, to look controllers up by guard */
+    private final ObjectIntMap<Guard> ids = new ObjectIntMap<>();
+
+    /**
+     * @param graph    The graph the guards navigate
+     * @param capacity Number of guards to make room for; more can still be added
+     */
+    public GuardSystem(TileGraph<TileNode> graph, int capacity) {
+        this.graph = graph;
+        capacity = Math.max(capacity, 1);
+        guards = new Guard[capacity];
+        controllers = new GuardAIController[capacity];
+        skippedTicks = new int[capacity];
+        skippedTime = new float[capacity];
+        due = new boolean[capacity];
+        directions = new Vector2[capacity];
+        susLevels = new float[capacity];
+        deAggroTimers = new float[capacity];
+        states = new byte[capacity];
+        stateTicks = new int[capacity];
+        lookTimes = new float[capacity];
+        lookChangeTimes = new float[capacity];
+        lookDirections = new float[capacity];
+        targetXs = new float[capacity];
+        targetYs = new float[capacity];
+        seenPlayers = new PlayableAvatar[capacity];
+        aggroTargets = new PlayableAvatar[capacity];
+        agroed = new boolean[capacity];
+        meowed = new boolean[capacity];
+        cameraAlerted = new boolean[capacity];
+        idle = new boolean[capacity];
+        lookingAround = new boolean[capacity];
+        inkBlindTimers = new float[capacity];
+    }
+
+    /**
+     * Adds a guard and the controller that runs its AI.
+     *
+     * @return The number of the guard
+     */
+    public int add(Guard guard, GuardAIController controller) {
+        if (size == guards.length) {
+            grow(size * 2);
+        }
+        int id = size++;
+        guards[id] = guard;
+        controllers[id] = controller;
+        skippedTicks[id] = 0;
+        skippedTime[id] = 0;
+        directions[id] = new Vector2();
+        controller.bind(this, id);
+        ids.put(guard, id);
+        return id;
+    }
+
+    /** Returns the number of guards. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the guard with the given number. */
+    public Guard getGuard(int id) {
+        return guards[id];
+    }
+
+    /** Returns the controller of the guard with the given number. */
+    public GuardAIController getController(int id) {
+        return controllers[id];
+    }
+
+    /** Returns the controller of the given guard, or null if the guard is not in the system. */
+    public GuardAIController getController(Guard guard) {
+        int id = ids.get(guard, -1);
+        return id < 0 ? null : controllers[id];
+    }
+
+    /**
+     * Records which avatar a guard's vision cone holds this tick. A guard that sees an
+     * avatar is set on it; one that sees nothing lets go unless a camera alerted it.
+     *
+     * @param id     The number of the guard
+     * @param avatar The avatar in sight, or null if there is none
+     */
+    public void setSeenPlayer(int id, PlayableAvatar avatar) {
+        seenPlayers[id] = avatar;
+        if (avatar != null) {
+            agroed[id] = true;
+            aggroTargets[id] = avatar;
+        } else if (!cameraAlerted[id]) {
+            agroed[id] = false;
+        }
+    }
+
+    /** Returns the avatar in the guard's vision cone this tick, or null. */
+    public PlayableAvatar getSeenPlayer(int id) {
+        return seenPlayers[id];
+    }
+
+    /** Returns whether the guard is set on an avatar it saw. */
+    public boolean isAgroed(int id) {
+        return agroed[id];
+    }
+
+    /** Returns whether the guard is heading for, or looking around, the spot of a meow. */
+    public boolean isMeowed(int id) {
+        return meowed[id];
+    }
+
+    /** Returns whether the guard was called by a camera that saw an avatar. */
+    public boolean isCameraAlerted(int id) {
+        return cameraAlerted[id];
+    }
+
+    /** Returns whether the guard's suspicion has reached the threshold for being suspicious. */
+    public boolean isSus(int id) {
+        return susLevels[id] >= GuardAIController.SUS_THRESHOLD;
+    }
+
+    /** Returns whether the guard stands at its single post. */
+    public boolean isIdle(int id) {
+        return idle[id];
+    }
+
+    /** Returns whether the guard stands still, looking left and right. */
+    public boolean isLookingAround(int id) {
+        return lookingAround[id];
+    }
+
+    /** Returns whether the guard is blinded by ink. */
+    public boolean isInkBlinded(int id) {
+        return inkBlindTimers[id] > 0;
+    }
+
+    /**
+     * Runs the AI of every guard that is due and steers every guard towards its current
+     * target. Call this on frames where physics steps, with the steps taken, so that the
+     * AI advances by whole ticks however the frames fall.
+     *
+     * @param dt        Seconds of the ticks to run
+     * @param ticks     Number of physics ticks since the last update
+     * @param level     The level the guards are in
+     * @param stimuli   The stimuli to deliver before the AI runs
+     * @param scheduler Decides which guards' AI runs this update
+     * @param cameras   The cameras the level is currently drawn with
+     */
+    public void update(float dt, int ticks, GameLevel level, StimulusBus stimuli, GuardTickScheduler scheduler,
+                       Camera... cameras) {
+        stimuli.deliver(level, this);
+        scheduler.begin(level, cameras);
+        for (int i = 0; i < size; i++) {
+            due[i] = scheduler.shouldUpdate(this, i);
+            if (!due[i]) {
+                skippedTicks[i] += ticks;
+                skippedTime[i] += dt;
+            }
+        }
+
+        // Phase one: decisions, which only read shared state
+        snapshot.capture(level);
+        graph.refreshLookups();
+        for (int i = 0; i < size; i++) {
+            if (due[i]) {
+                // Catch up on the ticks skipped since the last update
+                controllers[i].decide(dt + skippedTime[i], skippedTicks[i] + ticks, snapshot);
+            }
+        }
+
+        // Phase two: effects on shared state, in guard order
+        for (int i = 0; i < size; i++) {
+            GuardAIController controller = controllers[i];
+            if (due[i]) {
+                controller.apply();
+                skippedTicks[i] = 0;
+                skippedTime[i] = 0;
+            }
+            guards[i].think(controller.getMovementDirection(directions[i]), controller.getNextTargetLocation());
+        }
+    }
+
+    /** Removes every guard, keeping the arrays for the guards added next. */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            guards[i] = null;
+            controllers[i] = null;
+            directions[i] = null;
+            seenPlayers[i] = null;
+            aggroTargets[i] = null;
+        }
+        size = 0;
+        ids.clear();
+    }
+
+    private void grow(int capacity) {
+        guards = Arrays.copyOf(guards, capacity);
+        controllers = Arrays.copyOf(controllers, capacity);
+        skippedTicks = Arrays.copyOf(skippedTicks, capacity);
+        skippedTime = Arrays.copyOf(skippedTime, capacity);
+        due = Arrays.copyOf(due, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        susLevels = Arrays.copyOf(susLevels, capacity);
+        deAggroTimers = Arrays.copyOf(deAggroTimers, capacity);
+        states = Arrays.copyOf(states, capacity);
+        stateTicks = Arrays.copyOf(stateTicks, capacity);
+        lookTimes = Arrays.copyOf(lookTimes, capacity);
+        lookChangeTimes = Arrays.copyOf(lookChangeTimes, capacity);
+        lookDirections = Arrays.copyOf(lookDirections, capacity);
+        targetXs = Arrays.copyOf(targetXs, capacity);
+        targetYs = Arrays.copyOf(targetYs, capacity);
+        seenPlayers = Arrays.copyOf(seenPlayers, capacity);
+        aggroTargets = Arrays.copyOf(aggroTargets, capacity);
+        agroed = Arrays.copyOf(agroed, capacity);
+        meowed = Arrays.copyOf(meowed, capacity);
+        cameraAlerted = Arrays.copyOf(cameraAlerted, capacity);
+        idle = Arrays.copyOf(idle, capacity);
+        lookingAround = Arrays.copyOf(lookingAround, capacity);
+        inkBlindTimers = Arrays.copyOf(inkBlindTimers, capacity);
+    }
+}
@@ -0,0 +1,110 @@
+package walknroll.zoodini.controllers;
+
+import com.badlogic.gdx.graphics.Camera;
+
+import walknroll.zoodini.models.GameLevel;
+import walknroll.zoodini.models.entities.Guard;
+import walknroll.zoodini.models.entities.PlayableAvatar;
+
+/**
+ * Level of detail for guard AI: decides on every update which guards run their AI.
+ *
+ * A guard that is far from both avatars and cannot be seen on any camera only runs its
+ * AI every few updates, and skips its state machine, suspicion decay and replanning in
+ * between (see {@link GuardAIController#decide}). Its movement is still steered every update
+ * towards the target it last chose. Such guards are spread over the updates, so that only
+ * a fraction of them run at once.
+ *
+ * A guard goes back to running every update as soon as an avatar comes near, its vision
+ * cone shows up on screen, or something stirs it: seeing an avatar, a stimulus delivered
+ * by the {@link StimulusBus}, or any suspicion at all. Guards that are not patrolling
+ * always run every update.
+ */
+public class GuardTickScheduler {
+    /** Guards further than this from both avatars may be slowed down, in world units */
+    private final float nearRadius;
+    /** Updates between two AI updates of a slowed down guard */
+    private final int interval;
+    private long frame;
+
+    private Camera[] cameras;
+    private float tileSize;
+    private GameLevel level;
+
+    /** Statistics, for debug output */
+    private int reduced;
+    private int lastReduced;
+
+    /**
+     * @param nearRadius Guards closer than this to an avatar always run every update, in
+     *                   world units
+     * @param interval   Updates between two AI updates of guards that are far away
+     */
+    public GuardTickScheduler(float nearRadius, int interval) {
+        this.nearRadius = nearRadius;
+        this.interval = Math.max(interval, 1);
+    }
+
+    /**
+     * Starts a new update. Call this once before asking about any guard.
+     *
+     * @param level   The level the guards are in
+     * @param cameras The cameras the level is currently drawn with
+     */
+    public void begin(GameLevel level, Camera... cameras) {
+        this.level = level;
+        this.cameras = cameras;
+        this.tileSize = level.getTileSize();
+        frame++;
+        lastReduced = reduced;
+        reduced = 0;
+    }
+
+    /**
+     * Returns whether the guard's AI should run this update. If not, its ticks are made up
+     * for at its next update (see {@link GuardAIController#decide}).
+     *
+     * @param system The guard system holding the guard's AI state
+     * @param id     The guard's number in the system, which spreads the slowed down
+     *               guards over the updates
+     */
+    public boolean shouldUpdate(GuardSystem system, int id) {
+        if (isFullRate(system, id)) {
+            return true;
+        }
+        reduced++;
+        return (frame + id) % interval == 0;
+    }
+
+    /** Returns how many guards ran at the reduced rate in the last complete update. */
+    public int getReducedCount() {
+        return lastReduced;
+    }
+
+    private boolean isFullRate(GuardSystem system, int id) {
+        GuardAIController controller = system.getController(id);
+        if (!controller.isPatrolling() || controller.hasStimuli() || system.getSeenPlayer(id) != null
+                || system.isCameraAlerted(id) || system.isMeowed(id) || controller.getSusLevel() > 0) {
+            return true;
+        }
+        Guard guard = system.getGuard(id);
+        if (isNear(guard, level.isCatPresent() ? level.getCat() : null)
+                || isNear(guard, level.isOctopusPresent() ? level.getOctopus() : null)) {
+            return true;
+        }
+        // The whole vision cone counts, as it can reach onto the screen while the guard is off it
+        float x = guard.getPosition().x * tileSize;
+        float y = guard.getPosition().y * tileSize;
+        float reach = (guard.getViewDistance() + guard.getRadius()) * tileSize;
+        for (Camera camera : cameras) {
+            if (camera != null && camera.frustum.sphereInFrustum(x, y, 0, reach)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isNear(Guard guard, PlayableAvatar avatar) {
+        return avatar != null && guard.getPosition().dst2(avatar.getPosition()) < nearRadius * nearRadius;
+    }
+}
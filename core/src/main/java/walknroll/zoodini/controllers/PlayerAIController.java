@@ -1,11 +1,12 @@
 package walknroll.zoodini.controllers;
 
-import java.util.ArrayList;
 import java.util.List;
 
-import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
 import com.badlogic.gdx.math.Vector2;
 
+import walknroll.zoodini.controllers.aitools.PathCache;
+import walknroll.zoodini.controllers.aitools.PathRequestScheduler;
+import walknroll.zoodini.controllers.aitools.PathSmoother;
 import walknroll.zoodini.controllers.aitools.TileGraph;
 import walknroll.zoodini.controllers.aitools.TileNode;
 import walknroll.zoodini.models.GameLevel;
@@ -25,7 +26,7 @@ public class PlayerAIController {
     private PlayerAIState currState;
 
     /** The grid for pathfinding */
-    private TileGraph tileGraph;
+    private TileGraph<TileNode> tileGraph;
 
     /** Level of the game */
     private GameLevel level;
@@ -36,8 +37,18 @@ public class PlayerAIController {
     /** Minimum time to stay in a state before changing */
     private static final int STATE_CHANGE_THRESHOLD = 30;
 
-    /** Pathfinder for A* algorithm */
-    private IndexedAStarPathFinder<TileNode> pathFinder;
+    /** Queue that runs the follower's path searches within the per-frame budget */
+    private final PathRequestScheduler scheduler;
+
+    /** Last computed path, reused until the goal, the graph or the follower's position invalidates it */
+    private final PathCache pathCache;
+
+    /** String-pulls searched paths for the follower's size */
+    private final PathSmoother pathSmoother;
+    /** The path corner the follower is walking towards */
+    private final Vector2 pathCorner = new Vector2();
+    /** How close the follower needs to be to a path corner to move on to the next one */
+    private static final float CORNER_ARRIVAL_DISTANCE = 0.5f;
 
     private Vector2 nextTargetLocation;
 
@@ -62,14 +73,17 @@ public class PlayerAIController {
 
 
 
-    public PlayerAIController(PlayableAvatar follower, PlayableAvatar target, GameLevel level, TileGraph tileGraph, boolean followEnabled) {
+    public PlayerAIController(PlayableAvatar follower, PlayableAvatar target, GameLevel level, TileGraph<TileNode> tileGraph, boolean followEnabled,
+                              PathRequestScheduler scheduler) {
         this.follower = follower;
         this.target = target;
         this.followEnabled = followEnabled;
         this.tileGraph = tileGraph;
         this.currState = PlayerAIState.IDLE;
         this.movementDirection = new Vector2();
-        this.pathFinder = new IndexedAStarPathFinder<>(tileGraph);
+        this.scheduler = scheduler;
+        this.pathCache = new PathCache();
+        this.pathSmoother = new PathSmoother(tileGraph, follower.getRadius());
         this.previousTargetLocation = null;
         this.previousFollowerPosition = null;
         this.level = level;
@@ -187,9 +201,19 @@ public class PlayerAIController {
     }
 
     public void update(float dt) {
-        ticks++;
+        update(dt, 1);
+    }
+
+    /**
+     * Updates the follower's AI on the physics tick.
+     *
+     * @param dt      Seconds since the last update
+     * @param elapsed Physics ticks since the last update
+     */
+    public void update(float dt, int elapsed) {
+        ticks += elapsed;
 
-        targetStabilityCounter++;
+        targetStabilityCounter += elapsed;
 
         updatePlayerAIState();
         if (previousFollowerPosition == null) {
@@ -259,49 +283,33 @@ public class PlayerAIController {
 
         // Reset stability counter when choosing a new target
         targetStabilityCounter = 0;
-        // Get the raw path from A* pathfinding
-        List<TileNode> path = tileGraph.getPath(follower.getPosition().cpy(), targetLocation.cpy(), pathFinder);
+        // Get the raw path from A* pathfinding, reusing the last one if still valid
+        List<TileNode> path = pathCache.getPath(tileGraph, follower.getPosition(), targetLocation,
+            scheduler, PathRequestScheduler.Priority.NORMAL);
 
         // Handle empty path case
         if (path.isEmpty()) {
+            if (pathCache.isPending()) {
+                // Head straight for the target until the search has been served
+                return pathCorner.set(targetLocation);
+            }
             if (currState == PlayerAIState.FOLLOWING) {
-                return target.getPosition().cpy();
+                return pathCorner.set(target.getPosition());
             }
-            return follower.getPosition().cpy();
-        }
-
-        // Convert path to world coordinates
-        List<Vector2> worldPath = new ArrayList<>();
-        for (TileNode node : path) {
-            worldPath.add(tileGraph.tileToWorld(node));
+            return pathCorner.set(follower.getPosition());
         }
 
-        // Start with the first waypoint as our target
-        int pathIndex = 0;
-        Vector2 nextStep = worldPath.get(pathIndex);
-
-//        // Skip waypoints that are too close to prevent jittering
-//        final float MIN_STEP_DISTANCE = 1.0f;
-//        while (nextStep.dst(follower.getPosition()) < MIN_STEP_DISTANCE && pathIndex < worldPath.size() - 1) {
-//            pathIndex++;
-//            nextStep = worldPath.get(pathIndex);
-//        }
-
-        // Furthest visible waypoint
-        int furthestVisibleIndex = pathIndex;
-
-        // Try to find a waypoint further along the path that we can move to directly
-        for (int i = pathIndex + 1; i < worldPath.size(); i++) {
-            if (tileGraph.hasEnhancedLineOfSight(follower.getPosition(), worldPath.get(i))) {
-//            if (level.getLOSController().hasLineOfSight(follower.getPosition(), worldPath.get(i))) {
-                furthestVisibleIndex = i;
-            } else {
-                // Stop at the first waypoint we can't see directly
-                break;
-            }
-        }
+        // Head for the next corner of the string-pulled path
+        return pathCache.getNextCorner(tileGraph, follower.getPosition(), pathSmoother,
+            CORNER_ARRIVAL_DISTANCE, pathCorner);
+    }
 
-        return worldPath.get(furthestVisibleIndex);
+    /**
+     * Returns the path cache used by this controller, mainly so that hit/miss
+     * statistics can be reported in debug mode.
+     */
+    public PathCache getPathCache() {
+        return pathCache;
     }
 
     /**
@@ -0,0 +1,148 @@
+package walknroll.zoodini.controllers;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+
+import walknroll.zoodini.models.GameLevel;
+import walknroll.zoodini.models.entities.Guard;
+import walknroll.zoodini.models.entities.PlayableAvatar;
+
+/**
+ * Queue of things guards can notice: meows, camera alarms and ink hits.
+ *
+ * Whoever causes a stimulus publishes it once, with where it happened and how far it
+ * carries. Once per frame, before the guards' AI runs, {@link #deliver} hands every
+ * stimulus to the AI controllers of the guards in range, found with a query on the
+ * level's entity grid. Stimuli are delivered in the order they were published, so guards
+ * that receive several in a frame always see them in the same order.
+ *
+ * Delivered stimuli are recycled at the next delivery; controllers copy what they need.
+ */
+public class StimulusBus {
+    /** The kinds of stimulus */
+    public enum Type {
+        /** The cat meowed; guards in range come to investigate */
+        MEOW,
+        /** A security camera spotted an avatar; guards in range are alerted */
+        CAMERA_ALARM,
+        /** Ink hit a guard and blinds it */
+        INK_HIT
+    }
+
+    /** A single published stimulus */
+    public static class Stimulus implements Pool.Poolable {
+        private Type type;
+        private final Vector2 position = new Vector2();
+        private float radius;
+        private PlayableAvatar source;
+        private Guard target;
+
+        public Type getType() {
+            return type;
+        }
+
+        /** Returns where the stimulus happened, in world coordinates. */
+        public Vector2 getPosition() {
+            return position;
+        }
+
+        /** Returns the avatar that caused the stimulus, or null if unknown. */
+        public PlayableAvatar getSource() {
+            return source;
+        }
+
+        @Override
+        public void reset() {
+            type = null;
+            position.setZero();
+            radius = 0;
+            source = null;
+            target = null;
+        }
+    }
+
+    private final Pool<Stimulus> pool = new Pool<Stimulus>() {
+        @Override
+        protected Stimulus newObject() {
+            return new Stimulus();
+        }
+    };
+    private final Array<Stimulus> pending = new Array<>();
+    private final Array<Stimulus> delivered = new Array<>();
+    private final Array<Guard> recipients = new Array<>();
+
+    /**
+     * Publishes a stimulus that reaches every guard within a radius.
+     *
+     * @param type     The kind of stimulus
+     * @param position Where it happened, in world coordinates
+     * @param radius   How far it carries, in world units
+     * @param source   The avatar that caused it, or null
+     */
+    public void publish(Type type, Vector2 position, float radius, PlayableAvatar source) {
+        Stimulus stimulus = pool.obtain();
+        stimulus.type = type;
+        stimulus.position.set(position);
+        stimulus.radius = radius;
+        stimulus.source = source;
+        pending.add(stimulus);
+    }
+
+    /**
+     * Publishes a stimulus that reaches a single guard, wherever it is. Publishing the
+     * same stimulus for the same guard again before it is delivered has no effect.
+     *
+     * @param type   The kind of stimulus
+     * @param target The guard it happened to
+     * @param source The avatar that caused it, or null
+     */
+    public void publish(Type type, Guard target, PlayableAvatar source) {
+        // Several contacts in one physics step still make a single stimulus
+        for (Stimulus other : pending) {
+            if (other.type == type && other.target == target) {
+                return;
+            }
+        }
+        Stimulus stimulus = pool.obtain();
+        stimulus.type = type;
+        stimulus.position.set(target.getPosition());
+        stimulus.source = source;
+        stimulus.target = target;
+        pending.add(stimulus);
+    }
+
+    /**
+     * Hands every stimulus published since the last call to the controllers of the guards
+     * it reaches.
+     *
+     * @param level  The level the guards are in
+     * @param guards The guards and their AI controllers
+     */
+    public void deliver(GameLevel level, GuardSystem guards) {
+        pool.freeAll(delivered);
+        delivered.clear();
+        for (Stimulus stimulus : pending) {
+            recipients.clear();
+            if (stimulus.target != null) {
+                recipients.add(stimulus.target);
+            } else {
+                level.getEntitiesInRadius(stimulus.position, stimulus.radius, Guard.class, recipients);
+            }
+            for (Guard guard : recipients) {
+                GuardAIController controller = guards.getController(guard);
+                if (controller != null) {
+                    controller.receive(stimulus);
+                }
+            }
+            delivered.add(stimulus);
+        }
+        pending.clear();
+    }
+
+    /** Drops every stimulus that has not been delivered yet. */
+    public void clear() {
+        pool.freeAll(pending);
+        pending.clear();
+    }
+}
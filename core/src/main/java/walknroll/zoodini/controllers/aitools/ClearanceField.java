@@ -0,0 +1,131 @@
+package walknroll.zoodini.controllers.aitools;
+
+import java.util.Arrays;
+
+/**
+ * Distance from the centre of every tile to the nearest obstacle, in tiles.
+ *
+ * The distance is measured to the obstacle tile's square rather than its centre, so a
+ * circle of radius r centred on a tile overlaps no obstacle exactly when the tile's
+ * clearance is at least r. Obstacle tiles have clearance 0 and the area outside the map
+ * counts as obstacle. Only small distances matter for agents, so the field is capped at
+ * {@link #MAX_CLEARANCE}; that also keeps every change local, as a tile only influences
+ * tiles within {@link #REACH} of it.
+ *
+ * Clearance is computed from the tiles' own obstacle flags ({@link TileNode#isObstacle}),
+ * not from the search graph, which may additionally close tiles that are too narrow for
+ * the agents (see {@link GridGraph#setClearance}).
+ */
+public class ClearanceField {
+    /** Largest clearance stored, in tiles; anything further from a wall reads as this */
+    public static final float MAX_CLEARANCE = 4f;
+    /** How far, in tiles along either axis, a changed tile can affect the field */
+    public static final int REACH = (int) Math.ceil(MAX_CLEARANCE) + 1;
+
+    private final GridGraph grid;
+    private final float[] clearance;
+
+    /**
+     * Builds the field for the given grid.
+     *
+     * @param grid The grid whose tiles to measure
+     */
+    public ClearanceField(GridGraph grid) {
+        this.grid = grid;
+        this.clearance = new float[grid.getNodeCount()];
+        rebuild();
+    }
+
+    /**
+     * Creates a copy of another field as it is now.
+     *
+     * @param source The field to copy
+     */
+    public ClearanceField(ClearanceField source) {
+        this.grid = source.grid;
+        this.clearance = source.clearance.clone();
+    }
+
+    /** Makes this field equal to another field over the same grid, e.g. a copy taken earlier. */
+    public void copyFrom(ClearanceField source) {
+        System.arraycopy(source.clearance, 0, clearance, 0, clearance.length);
+    }
+
+    /** Returns the clearance of the tile with the given index, in tiles. */
+    public float get(int index) {
+        return clearance[index];
+    }
+
+    /** Recomputes the clearance of every tile. */
+    public void rebuild() {
+        Arrays.fill(clearance, MAX_CLEARANCE);
+        updateWindow(0, 0, grid.WIDTH, grid.HEIGHT);
+    }
+
+    /**
+     * Recomputes the clearance around a block of tiles whose obstacle flags have changed.
+     *
+     * @param startX Left column of the block (inclusive)
+     * @param startY Bottom row of the block (inclusive)
+     * @param endX   Right column of the block (exclusive)
+     * @param endY   Top row of the block (exclusive)
+     */
+    public void updateRegion(int startX, int startY, int endX, int endY) {
+        updateWindow(startX - REACH, startY - REACH, endX + REACH, endY + REACH);
+    }
+
+    private void updateWindow(int startX, int startY, int endX, int endY) {
+        startX = Math.max(startX, 0);
+        startY = Math.max(startY, 0);
+        endX = Math.min(endX, grid.WIDTH);
+        endY = Math.min(endY, grid.HEIGHT);
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                clearance[x * grid.HEIGHT + y] = measure(x, y);
+            }
+        }
+    }
+
+    /**
+     * Searches rings of growing size around a tile for the closest obstacle. An obstacle
+     * in ring k is at least k - 0.5 away, so the search stops once that exceeds the best
+     * distance found so far.
+     */
+    private float measure(int x, int y) {
+        if (isBlocked(x, y)) {
+            return 0;
+        }
+        float best2 = MAX_CLEARANCE * MAX_CLEARANCE;
+        for (int k = 1; k <= REACH; k++) {
+            float ring = k - 0.5f;
+            if (ring * ring >= best2) {
+                break;
+            }
+            for (int i = -k; i <= k; i++) {
+                // Top and bottom rows of the ring, then its left and right columns
+                best2 = closer(x + i, y - k, i, k, best2);
+                best2 = closer(x + i, y + k, i, k, best2);
+                if (i != -k && i != k) {
+                    best2 = closer(x - k, y + i, k, i, best2);
+                    best2 = closer(x + k, y + i, k, i, best2);
+                }
+            }
+        }
+        return (float) Math.sqrt(best2);
+    }
+
+    /** Returns the smaller of best2 and the squared distance to the tile at the given offset, if it is blocked. */
+    private float closer(int x, int y, int offsetX, int offsetY, float best2) {
+        if (!isBlocked(x, y)) {
+            return best2;
+        }
+        float dx = Math.max(Math.abs(offsetX) - 0.5f, 0);
+        float dy = Math.max(Math.abs(offsetY) - 0.5f, 0);
+        return Math.min(best2, dx * dx + dy * dy);
+    }
+
+    private boolean isBlocked(int x, int y) {
+        TileNode node = grid.getNode(x, y);
+        return node == null || node.isObstacle;
+    }
+}
@@ -0,0 +1,394 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.utils.IntArray;
+import java.util.Arrays;
+
+/**
+ * Abstract graph for hierarchical pathfinding (HPA*) over a {@link GridGraph}.
+ *
+ * The grid is split into square clusters. Wherever two neighbouring clusters share a run
+ * of open cells along their border, one or two pairs of cells on that run become
+ * entrances: short runs get a single entrance in the middle, longer runs one at each end.
+ * For every cluster the walking distance between each pair of its entrances, staying
+ * inside the cluster, is precomputed. A search can then plan across whole clusters and
+ * only has to look at individual tiles in the clusters it is actually walking through.
+ *
+ * Clusters are always searched with orthogonal steps only, so on a grid with diagonal
+ * moves the paths are still walkable, just not as short as they could be.
+ *
+ * When a door opens only the clusters around it are rebuilt, see {@link #rebuildRegion}.
+ * This graph is shared by every {@link ClusterPathFinder} of a level.
+ */
+public class ClusterGraph {
+    /** Side length of a cluster in tiles */
+    public static final int DEFAULT_CLUSTER_SIZE = 10;
+    /** Border runs at least this long get an entrance at both ends instead of the middle */
+    private static final int LONG_RUN = 6;
+    /** Distance between entrances that cannot reach each other inside their cluster */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final GridGraph grid;
+    public final int CLUSTER_SIZE;
+    /** Number of clusters in each direction */
+    public final int CLUSTERS_X;
+    public final int CLUSTERS_Y;
+
+    /** Cell pairs (inside, outside) crossing each cluster's east border, back to back */
+    private final IntArray[] eastLinks;
+    /** Cell pairs (inside, outside) crossing each cluster's north border, back to back */
+    private final IntArray[] northLinks;
+    /** Distinct entrance cells of each cluster */
+    private final IntArray[] entrances;
+    /** Intra-cluster distances between entrances, k * k for k entrances */
+    private final int[][] distances;
+    /** Position of each cell in its cluster's entrance list, or -1 */
+    private final int[] entranceSlot;
+
+    /** Scratch arrays for searches inside one cluster */
+    private final int[] localDistances;
+    private final int[] localParents;
+    private final int[] localQueue;
+
+    private long clusterBuilds;
+
+    /**
+     * Builds the abstract graph over the given grid.
+     *
+     * @param grid        The grid to cluster
+     * @param clusterSize Side length of a cluster in tiles
+     */
+    public ClusterGraph(GridGraph grid, int clusterSize) {
+        this(grid, clusterSize, true);
+    }
+
+    /**
+     * Creates a copy of another cluster graph as it is now, over the same grid. The copy is
+     * not kept up to date; it is meant to be put back later with {@link #copyFrom}.
+     *
+     * @param source The graph to copy
+     */
+    public ClusterGraph(ClusterGraph source) {
+        this(source.grid, source);
+    }
+
+    /**
+     * Creates a copy of another cluster graph as it is now, over a copy of its grid, e.g.
+     * a snapshot for background searches. The copy is not kept up to date.
+     *
+     * @param grid   A grid equal to the one the source is built over
+     * @param source The graph to copy
+     */
+    public ClusterGraph(GridGraph grid, ClusterGraph source) {
+        this(grid, source.CLUSTER_SIZE, false);
+        copyFrom(source);
+    }
+
+    private ClusterGraph(GridGraph grid, int clusterSize, boolean build) {
+        this.grid = grid;
+        this.CLUSTER_SIZE = clusterSize;
+        this.CLUSTERS_X = (grid.WIDTH + clusterSize - 1) / clusterSize;
+        this.CLUSTERS_Y = (grid.HEIGHT + clusterSize - 1) / clusterSize;
+        int clusters = CLUSTERS_X * CLUSTERS_Y;
+        this.eastLinks = new IntArray[clusters];
+        this.northLinks = new IntArray[clusters];
+        this.entrances = new IntArray[clusters];
+        this.distances = new int[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            eastLinks[c] = new IntArray();
+            northLinks[c] = new IntArray();
+            entrances[c] = new IntArray();
+        }
+        this.entranceSlot = new int[grid.getNodeCount()];
+        Arrays.fill(entranceSlot, -1);
+        this.localDistances = new int[clusterSize * clusterSize];
+        this.localParents = new int[clusterSize * clusterSize];
+        this.localQueue = new int[clusterSize * clusterSize];
+        if (build) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Makes this graph equal to another one over a grid of the same size and with the
+     * same cluster size, e.g. a copy taken earlier.
+     *
+     * @param source The graph to copy from
+     */
+    public void copyFrom(ClusterGraph source) {
+        for (int c = 0; c < entrances.length; c++) {
+            eastLinks[c].clear();
+            eastLinks[c].addAll(source.eastLinks[c]);
+            northLinks[c].clear();
+            northLinks[c].addAll(source.northLinks[c]);
+            entrances[c].clear();
+            entrances[c].addAll(source.entrances[c]);
+            int[] matrix = source.distances[c];
+            if (matrix == null) {
+                distances[c] = null;
+            } else if (distances[c] == null || distances[c].length < matrix.length) {
+                distances[c] = matrix.clone();
+            } else {
+                System.arraycopy(matrix, 0, distances[c], 0, matrix.length);
+            }
+        }
+        System.arraycopy(source.entranceSlot, 0, entranceSlot, 0, entranceSlot.length);
+    }
+
+    /** Rebuilds every cluster, e.g. after the whole grid has been refreshed. */
+    public void rebuild() {
+        rebuildClusters(0, 0, CLUSTERS_X - 1, CLUSTERS_Y - 1);
+    }
+
+    /**
+     * Rebuilds the clusters affected by a change to a block of cells.
+     *
+     * @param startX Left column of the block (inclusive)
+     * @param startY Bottom row of the block (inclusive)
+     * @param endX   Right column of the block (exclusive)
+     * @param endY   Top row of the block (exclusive)
+     */
+    public void rebuildRegion(int startX, int startY, int endX, int endY) {
+        startX = Math.max(startX, 0);
+        startY = Math.max(startY, 0);
+        endX = Math.min(endX, grid.WIDTH);
+        endY = Math.min(endY, grid.HEIGHT);
+        if (startX >= endX || startY >= endY) {
+            return;
+        }
+        rebuildClusters(startX / CLUSTER_SIZE, startY / CLUSTER_SIZE,
+            (endX - 1) / CLUSTER_SIZE, (endY - 1) / CLUSTER_SIZE);
+    }
+
+    /**
+     * Recomputes the borders between the given clusters and everything next to them,
+     * then the entrances and distances of those clusters and their neighbours, since a
+     * changed border also changes the entrances on the other side of it.
+     */
+    private void rebuildClusters(int minX, int minY, int maxX, int maxY) {
+        for (int cx = Math.max(minX - 1, 0); cx <= maxX; cx++) {
+            for (int cy = Math.max(minY - 1, 0); cy <= maxY; cy++) {
+                if (cy >= minY) {
+                    findEastLinks(cx, cy);
+                }
+                if (cx >= minX) {
+                    findNorthLinks(cx, cy);
+                }
+            }
+        }
+        for (int cx = Math.max(minX - 1, 0); cx <= Math.min(maxX + 1, CLUSTERS_X - 1); cx++) {
+            for (int cy = Math.max(minY - 1, 0); cy <= Math.min(maxY + 1, CLUSTERS_Y - 1); cy++) {
+                buildCluster(cx, cy);
+            }
+        }
+    }
+
+    /** Finds the entrances across the east border of a cluster. */
+    private void findEastLinks(int cx, int cy) {
+        IntArray links = eastLinks[cx * CLUSTERS_Y + cy];
+        links.clear();
+        int x = (cx + 1) * CLUSTER_SIZE - 1;
+        if (x + 1 >= grid.WIDTH) {
+            return;
+        }
+        int y0 = cy * CLUSTER_SIZE;
+        int y1 = Math.min(y0 + CLUSTER_SIZE, grid.HEIGHT);
+        int runStart = -1;
+        for (int y = y0; y <= y1; y++) {
+            boolean open = y < y1 && grid.isWalkable(x, y) && grid.isWalkable(x + 1, y);
+            if (open && runStart < 0) {
+                runStart = y;
+            } else if (!open && runStart >= 0) {
+                addEntrances(links, runStart, y - 1, x, true);
+                runStart = -1;
+            }
+        }
+    }
+
+    /** Finds the entrances across the north border of a cluster. */
+    private void findNorthLinks(int cx, int cy) {
+        IntArray links = northLinks[cx * CLUSTERS_Y + cy];
+        links.clear();
+        int y = (cy + 1) * CLUSTER_SIZE - 1;
+        if (y + 1 >= grid.HEIGHT) {
+            return;
+        }
+        int x0 = cx * CLUSTER_SIZE;
+        int x1 = Math.min(x0 + CLUSTER_SIZE, grid.WIDTH);
+        int runStart = -1;
+        for (int x = x0; x <= x1; x++) {
+            boolean open = x < x1 && grid.isWalkable(x, y) && grid.isWalkable(x, y + 1);
+            if (open && runStart < 0) {
+                runStart = x;
+            } else if (!open && runStart >= 0) {
+                addEntrances(links, runStart, x - 1, y, false);
+                runStart = -1;
+            }
+        }
+    }
+
+    /** Adds the entrance cell pairs for one open run along a border. */
+    private void addEntrances(IntArray links, int from, int to, int line, boolean east) {
+        if (to - from + 1 < LONG_RUN) {
+            addLink(links, (from + to) / 2, line, east);
+        } else {
+            addLink(links, from, line, east);
+            addLink(links, to, line, east);
+        }
+    }
+
+    private void addLink(IntArray links, int along, int line, boolean east) {
+        if (east) {
+            links.add(line * grid.HEIGHT + along, (line + 1) * grid.HEIGHT + along);
+        } else {
+            links.add(along * grid.HEIGHT + line, along * grid.HEIGHT + line + 1);
+        }
+    }
+
+    /** Collects the entrances of a cluster and computes the distances between them. */
+    private void buildCluster(int cx, int cy) {
+        clusterBuilds++;
+        int cluster = cx * CLUSTERS_Y + cy;
+        IntArray cells = entrances[cluster];
+        for (int i = 0; i < cells.size; i++) {
+            entranceSlot[cells.get(i)] = -1;
+        }
+        cells.clear();
+        addEntranceCells(cells, eastLinks[cluster], 0);
+        addEntranceCells(cells, northLinks[cluster], 0);
+        if (cx > 0) {
+            addEntranceCells(cells, eastLinks[cluster - CLUSTERS_Y], 1);
+        }
+        if (cy > 0) {
+            addEntranceCells(cells, northLinks[cluster - 1], 1);
+        }
+
+        int k = cells.size;
+        int[] matrix = distances[cluster];
+        if (matrix == null || matrix.length < k * k) {
+            matrix = new int[Math.max(k * k, 16)];
+            distances[cluster] = matrix;
+        }
+        for (int i = 0; i < k; i++) {
+            searchCluster(cells.get(i), localDistances, localParents, localQueue);
+            for (int j = 0; j < k; j++) {
+                matrix[i * k + j] = localDistances[toLocal(cells.get(j))];
+            }
+        }
+    }
+
+    private void addEntranceCells(IntArray cells, IntArray links, int side) {
+        for (int i = side; i < links.size; i += 2) {
+            int cell = links.get(i);
+            if (entranceSlot[cell] < 0) {
+                entranceSlot[cell] = cells.size;
+                cells.add(cell);
+            }
+        }
+    }
+
+    /**
+     * Breadth-first search from a cell that never leaves the cell's cluster. Results are
+     * indexed by {@link #toLocal(int)}; cells that were not reached keep a distance of
+     * {@link #UNREACHABLE} and a parent of -1.
+     *
+     * @param from      The cell to search from
+     * @param distances Receives the distance of every cell in the cluster
+     * @param parents   Receives the cell each cell was reached from
+     * @param queue     Scratch space of CLUSTER_SIZE * CLUSTER_SIZE entries
+     */
+    void searchCluster(int from, int[] distances, int[] parents, int[] queue) {
+        Arrays.fill(distances, UNREACHABLE);
+        Arrays.fill(parents, -1);
+        int cluster = getCluster(from);
+        int head = 0;
+        int tail = 0;
+        distances[toLocal(from)] = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int cell = queue[head++];
+            int next = distances[toLocal(cell)] + 1;
+            int mask = grid.getNeighbourMask(cell) & 0xF;
+            while (mask != 0) {
+                int d = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                int neighbour = grid.getNeighbour(cell, d);
+                if (getCluster(neighbour) != cluster) {
+                    continue;
+                }
+                int local = toLocal(neighbour);
+                if (distances[local] == UNREACHABLE) {
+                    distances[local] = next;
+                    parents[local] = cell;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+    }
+
+    /** Returns the cluster a cell belongs to. */
+    public int getCluster(int cell) {
+        int x = cell / grid.HEIGHT;
+        int y = cell % grid.HEIGHT;
+        return (x / CLUSTER_SIZE) * CLUSTERS_Y + y / CLUSTER_SIZE;
+    }
+
+    /** Returns the index of a cell within its cluster, for the arrays of {@link #searchCluster}. */
+    int toLocal(int cell) {
+        int x = cell / grid.HEIGHT;
+        int y = cell % grid.HEIGHT;
+        return (x % CLUSTER_SIZE) * CLUSTER_SIZE + y % CLUSTER_SIZE;
+    }
+
+    /** Returns the entrance cells of a cluster. The array must not be modified. */
+    public IntArray getEntrances(int cluster) {
+        return entrances[cluster];
+    }
+
+    /**
+     * Returns the distance between two entrances of a cluster, by their position in
+     * {@link #getEntrances(int)}, or {@link #UNREACHABLE}.
+     */
+    public int getDistance(int cluster, int from, int to) {
+        return distances[cluster][from * entrances[cluster].size + to];
+    }
+
+    /** Returns the position of a cell in its cluster's entrance list, or -1 if it is not an entrance. */
+    public int getEntranceSlot(int cell) {
+        return entranceSlot[cell];
+    }
+
+    /**
+     * Adds the cells across the border from an entrance to out. An entrance usually has
+     * one such cell, but one in the corner of a cluster can have two.
+     */
+    public void getCrossings(int cell, IntArray out) {
+        int cluster = getCluster(cell);
+        int cx = cluster / CLUSTERS_Y;
+        int cy = cluster % CLUSTERS_Y;
+        addCrossings(eastLinks[cluster], cell, 0, out);
+        addCrossings(northLinks[cluster], cell, 0, out);
+        if (cx > 0) {
+            addCrossings(eastLinks[cluster - CLUSTERS_Y], cell, 1, out);
+        }
+        if (cy > 0) {
+            addCrossings(northLinks[cluster - 1], cell, 1, out);
+        }
+    }
+
+    private void addCrossings(IntArray links, int cell, int side, IntArray out) {
+        for (int i = side; i < links.size; i += 2) {
+            if (links.get(i) == cell) {
+                out.add(links.get(i + 1 - 2 * side));
+            }
+        }
+    }
+
+    public GridGraph getGrid() {
+        return grid;
+    }
+
+    /** Returns how many times a cluster has been (re)built, for profiling. */
+    public long getClusterBuilds() {
+        return clusterBuilds;
+    }
+}
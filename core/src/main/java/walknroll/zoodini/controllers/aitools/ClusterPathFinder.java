@@ -0,0 +1,403 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.Connection;
+import com.badlogic.gdx.ai.pfa.GraphPath;
+import com.badlogic.gdx.ai.pfa.Heuristic;
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import com.badlogic.gdx.ai.pfa.PathFinderRequest;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+import com.badlogic.gdx.utils.BinaryHeap;
+import com.badlogic.gdx.utils.IntArray;
+import java.util.Arrays;
+
+/**
+ * Hierarchical pathfinder (HPA*) over a {@link ClusterGraph}.
+ *
+ * The start and goal are connected to the entrances of their clusters with a search
+ * that stays inside the cluster, and A* then runs over the entrances only. The abstract
+ * route is turned back into tiles one hop at a time, each hop being a short search
+ * inside a single cluster. Paths are close to, but not always exactly, the shortest.
+ *
+ * In lazy mode only the part of the route up to the first tile of the next cluster is
+ * turned into tiles, and {@link #isPartial()} reports that the path stops short of the
+ * goal. The abstract route is kept in a {@link Route} owned by the agent, not by the
+ * finder, so one finder can serve many agents. Searching again from the end of the path
+ * with the same goal and the same route (see {@link #setRoute}) continues along it
+ * instead of planning again, as long as the graph has not changed.
+ *
+ * This class is not thread-safe.
+ */
+public class ClusterPathFinder implements PathFinder<TileNode> {
+    private static final int UNVISITED = 0;
+    private static final int OPEN = 1;
+    private static final int CLOSED = 2;
+    /** Parent of records reached straight from the start */
+    private static final int FROM_START = -1;
+
+    private final ClusterGraph clusters;
+    private final GridGraph grid;
+    private final boolean lazy;
+
+    /** Search statistics; visited nodes are abstract nodes */
+    public final IndexedAStarPathFinder.Metrics metrics = new IndexedAStarPathFinder.Metrics();
+
+    private final BinaryHeap<Record> openList = new BinaryHeap<>();
+    private final Record[] records;
+    /** Record of the goal itself, kept apart since the goal may also be an entrance */
+    private final Record goalRecord = new Record(-1);
+    private int searchId;
+
+    /** Distance from each entrance of the goal's cluster to the goal */
+    private int[] goalCosts = new int[16];
+
+    /** Route searches continue and store theirs in, or null; see {@link #setRoute} */
+    private Route boundRoute;
+    /** Route of the search in progress */
+    private Route route;
+    /** Route for searches that were not given one; never continued */
+    private final Route scratchRoute = new Route();
+    /** Whether the last returned path stops before the goal */
+    private boolean partial;
+
+    private final IntArray cells = new IntArray();
+    private final IntArray crossings = new IntArray();
+    private final int[] localDistances;
+    private final int[] localParents;
+    private final int[] localQueue;
+
+    /**
+     * @param clusters The abstract graph to plan on
+     * @param lazy     Whether to only return the path up to the next cluster
+     */
+    public ClusterPathFinder(ClusterGraph clusters, boolean lazy) {
+        this(clusters, clusters.getGrid(), lazy);
+    }
+
+    /**
+     * Creates a pathfinder that plans on shared clusters but looks up tiles in its own
+     * copy of their grid, so that several threads can search the same clusters at once.
+     *
+     * @param clusters The abstract graph to plan on; only read
+     * @param grid     A grid equal to the one the clusters were built over
+     * @param lazy     Whether to only return the path up to the next cluster
+     */
+    public ClusterPathFinder(ClusterGraph clusters, GridGraph grid, boolean lazy) {
+        this.clusters = clusters;
+        this.grid = grid;
+        this.lazy = lazy;
+        this.records = new Record[grid.getNodeCount()];
+        int size = clusters.CLUSTER_SIZE * clusters.CLUSTER_SIZE;
+        this.localDistances = new int[size];
+        this.localParents = new int[size];
+        this.localQueue = new int[size];
+    }
+
+    /**
+     * Returns whether the last path found stops at the edge of a cluster instead of at the
+     * goal. Search again from its last tile, with the same route, to get the next part.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Sets the route that searches continue, if they can, and store their own route in,
+     * until another one is set. A finder shared by several agents must be given the
+     * searching agent's route before every search; with null searches always plan afresh.
+     *
+     * @param route The searching agent's route, or null
+     */
+    public void setRoute(Route route) {
+        this.boundRoute = route;
+    }
+
+    @Override
+    public boolean searchNodePath(TileNode startNode, TileNode endNode, Heuristic<TileNode> heuristic,
+                                  GraphPath<TileNode> outPath) {
+        if (!findCells(startNode, endNode, heuristic)) {
+            return false;
+        }
+        for (int i = 0; i < cells.size; i++) {
+            outPath.add(grid.getNode(cells.get(i)));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean searchConnectionPath(TileNode startNode, TileNode endNode, Heuristic<TileNode> heuristic,
+                                        GraphPath<Connection<TileNode>> outPath) {
+        if (!findCells(startNode, endNode, heuristic)) {
+            return false;
+        }
+        for (int i = 1; i < cells.size; i++) {
+            int from = cells.get(i - 1);
+            outPath.add(grid.getEdge(from, directionBetween(from, cells.get(i))));
+        }
+        return true;
+    }
+
+    /**
+     * Runs the whole search at once; the abstract graph is small enough that it is not
+     * worth splitting across frames.
+     */
+    @Override
+    public boolean search(PathFinderRequest<TileNode> request, long timeToRun) {
+        request.resultPath.clear();
+        request.pathFound = searchNodePath(request.startNode, request.endNode, request.heuristic,
+            request.resultPath);
+        request.statusChanged = false;
+        return true;
+    }
+
+    /**
+     * Fills {@link #cells} with the path from start to end, continuing the search's route
+     * where possible.
+     */
+    private boolean findCells(TileNode startNode, TileNode endNode, Heuristic<TileNode> heuristic) {
+        int start = startNode.getIndex();
+        int goal = endNode.getIndex();
+        metrics.reset();
+        partial = false;
+        if (boundRoute != null) {
+            route = boundRoute;
+        } else {
+            route = scratchRoute;
+            route.nodes.clear();
+        }
+        if (grid.isObstacle(start) || grid.isObstacle(goal)) {
+            return false;
+        }
+
+        IntArray nodes = route.nodes;
+        boolean continuing = lazy && nodes.size > 0 && nodes.peek() == goal
+            && route.version == grid.getVersion() && route.cursor < nodes.size - 1
+            && clusters.getCluster(start) == clusters.getCluster(nodes.get(route.cursor));
+        if (continuing && refine(start, route.cursor)) {
+            return true;
+        }
+        if (!plan(start, goal, heuristic)) {
+            nodes.clear();
+            return false;
+        }
+        route.version = grid.getVersion();
+        return refine(start, 1);
+    }
+
+    /**
+     * Runs A* over the entrances and stores the resulting route.
+     */
+    private boolean plan(int start, int goal, Heuristic<TileNode> heuristic) {
+        openList.clear();
+        if (++searchId < 0) {
+            Arrays.fill(records, null);
+            searchId = 1;
+        }
+        TileNode goalNode = grid.getNode(goal);
+        int startCluster = clusters.getCluster(start);
+        int goalCluster = clusters.getCluster(goal);
+
+        // Connect the goal to the entrances of its cluster
+        IntArray goalEntrances = clusters.getEntrances(goalCluster);
+        if (goalCosts.length < goalEntrances.size) {
+            goalCosts = new int[goalEntrances.size];
+        }
+        clusters.searchCluster(goal, localDistances, localParents, localQueue);
+        for (int i = 0; i < goalEntrances.size; i++) {
+            goalCosts[i] = localDistances[clusters.toLocal(goalEntrances.get(i))];
+        }
+
+        // Connect the start to the entrances of its cluster, and to the goal if it is close
+        goalRecord.searchId = searchId;
+        goalRecord.category = UNVISITED;
+        clusters.searchCluster(start, localDistances, localParents, localQueue);
+        if (startCluster == goalCluster && localDistances[clusters.toLocal(goal)] != ClusterGraph.UNREACHABLE) {
+            relaxGoal(FROM_START, localDistances[clusters.toLocal(goal)]);
+        }
+        IntArray startEntrances = clusters.getEntrances(startCluster);
+        for (int i = 0; i < startEntrances.size; i++) {
+            int cell = startEntrances.get(i);
+            int distance = localDistances[clusters.toLocal(cell)];
+            if (distance != ClusterGraph.UNREACHABLE) {
+                relax(FROM_START, cell, distance, goalNode, heuristic);
+            }
+        }
+
+        while (openList.size > 0) {
+            Record current = openList.pop();
+            current.category = CLOSED;
+            metrics.visitedNodes++;
+            if (current == goalRecord) {
+                storeRoute(start, goal);
+                return true;
+            }
+
+            int cell = current.index;
+            int cluster = clusters.getCluster(cell);
+            int slot = clusters.getEntranceSlot(cell);
+            IntArray entrances = clusters.getEntrances(cluster);
+            for (int j = 0; j < entrances.size; j++) {
+                int distance = clusters.getDistance(cluster, slot, j);
+                if (j != slot && distance != ClusterGraph.UNREACHABLE) {
+                    relax(cell, entrances.get(j), current.cost + distance, goalNode, heuristic);
+                }
+            }
+            crossings.clear();
+            clusters.getCrossings(cell, crossings);
+            for (int j = 0; j < crossings.size; j++) {
+                relax(cell, crossings.get(j), current.cost + 1, goalNode, heuristic);
+            }
+            if (cluster == goalCluster && goalCosts[slot] != ClusterGraph.UNREACHABLE) {
+                relaxGoal(cell, current.cost + goalCosts[slot]);
+            }
+            metrics.openListPeak = Math.max(metrics.openListPeak, openList.size);
+        }
+        return false;
+    }
+
+    private void relax(int parent, int cell, float cost, TileNode goalNode, Heuristic<TileNode> heuristic) {
+        Record record = getRecord(cell);
+        if (record.category == CLOSED || (record.category == OPEN && record.cost <= cost)) {
+            return;
+        }
+        record.parent = parent;
+        record.cost = cost;
+        float value = cost + heuristic.estimate(grid.getNode(cell), goalNode);
+        if (record.category == OPEN) {
+            openList.setValue(record, value);
+        } else {
+            record.category = OPEN;
+            openList.add(record, value);
+            metrics.openListAdditions++;
+        }
+    }
+
+    private void relaxGoal(int parent, float cost) {
+        if (goalRecord.category == OPEN && goalRecord.cost <= cost) {
+            return;
+        }
+        goalRecord.parent = parent;
+        goalRecord.cost = cost;
+        if (goalRecord.category == OPEN) {
+            openList.setValue(goalRecord, cost);
+        } else {
+            goalRecord.category = OPEN;
+            openList.add(goalRecord, cost);
+            metrics.openListAdditions++;
+        }
+    }
+
+    /** Stores the abstract route found by the last search, start and goal included. */
+    private void storeRoute(int start, int goal) {
+        IntArray nodes = route.nodes;
+        nodes.clear();
+        nodes.add(goal);
+        for (int cell = goalRecord.parent; cell != FROM_START; cell = records[cell].parent) {
+            nodes.add(cell);
+        }
+        nodes.add(start);
+        nodes.reverse();
+    }
+
+    /**
+     * Turns the route into tiles, starting at the given cell and heading for route
+     * element {@code next} first. Fills {@link #cells}.
+     *
+     * @return false if part of the route can no longer be walked
+     */
+    private boolean refine(int from, int next) {
+        cells.clear();
+        cells.add(from);
+        int startCluster = clusters.getCluster(from);
+        int current = from;
+        IntArray nodes = route.nodes;
+        for (int i = next; i < nodes.size; i++) {
+            int target = nodes.get(i);
+            if (clusters.getCluster(target) == clusters.getCluster(current)) {
+                if (current != target) {
+                    // Search back from the target so that the parents lead forward
+                    clusters.searchCluster(target, localDistances, localParents, localQueue);
+                    if (localParents[clusters.toLocal(current)] < 0) {
+                        return false;
+                    }
+                    for (int cell = localParents[clusters.toLocal(current)]; cell != target;
+                         cell = localParents[clusters.toLocal(cell)]) {
+                        cells.add(cell);
+                    }
+                    cells.add(target);
+                }
+            } else {
+                cells.add(target);
+            }
+            current = target;
+            route.cursor = i;
+            if (lazy && clusters.getCluster(current) != startCluster && i < nodes.size - 1) {
+                partial = true;
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the record of a cell, resetting it if it belongs to an older search. */
+    private Record getRecord(int index) {
+        Record record = records[index];
+        if (record == null) {
+            record = new Record(index);
+            records[index] = record;
+        }
+        if (record.searchId != searchId) {
+            record.searchId = searchId;
+            record.category = UNVISITED;
+        }
+        return record;
+    }
+
+    private int directionBetween(int from, int to) {
+        int delta = to - from;
+        if (delta == -grid.HEIGHT) return GridGraph.WEST;
+        if (delta == grid.HEIGHT) return GridGraph.EAST;
+        return delta < 0 ? GridGraph.SOUTH : GridGraph.NORTH;
+    }
+
+    /**
+     * The abstract route of one agent, kept between its searches so that the parts of a
+     * lazily returned path follow the same plan. Every agent needs its own.
+     */
+    public static final class Route {
+        /** Cells of the abstract route, from the start to the goal */
+        private final IntArray nodes = new IntArray();
+        /** Index in {@link #nodes} of the last node the returned path reached */
+        private int cursor;
+        /** Graph version the route was planned against */
+        private int version = -1;
+
+        public Route() {
+        }
+
+        /**
+         * Creates a copy of another route, e.g. for a search on another thread that
+         * should continue it without touching the original.
+         *
+         * @param source The route to copy
+         */
+        public Route(Route source) {
+            nodes.addAll(source.nodes);
+            cursor = source.cursor;
+            version = source.version;
+        }
+    }
+
+    /** Open/closed bookkeeping for one abstract node */
+    private static class Record extends BinaryHeap.Node {
+        final int index;
+        int parent;
+        float cost;
+        int category;
+        int searchId;
+
+        Record(int index) {
+            super(0);
+            this.index = index;
+        }
+    }
+}
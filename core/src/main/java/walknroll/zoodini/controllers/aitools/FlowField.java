@@ -0,0 +1,139 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.math.Vector2;
+import java.util.Arrays;
+
+/**
+ * Distance field towards a single moving target, shared by every agent heading there.
+ *
+ * A breadth-first search from the target's tile stores the number of steps from every
+ * walkable tile to the target. An agent then only has to step to whichever neighbour is
+ * closer to the target, so K guards chasing the same avatar cost one O(cells) pass
+ * instead of K separate A* searches. The field is only rebuilt when the target moves to
+ * another tile or the graph changes (see {@link TileGraph#getVersion()}).
+ *
+ * Only orthogonal steps are used, matching the 4-connected searches.
+ */
+public class FlowField {
+    /** Distance of tiles that cannot reach the target */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final TileGraph<TileNode> graph;
+    private final GridGraph grid;
+    /** Steps from each tile to the target, indexed by {@link TileNode#getIndex()} */
+    private final int[] distances;
+    /** BFS queue of tile indices */
+    private final int[] queue;
+
+    /** The tile the field currently leads to */
+    private TileNode target;
+    /** The graph version the field was built against */
+    private int version = -1;
+
+    private long rebuilds;
+
+    public FlowField(TileGraph<TileNode> graph) {
+        this.graph = graph;
+        this.grid = graph.getSearchGraph();
+        this.distances = new int[grid.getNodeCount()];
+        this.queue = new int[grid.getNodeCount()];
+    }
+
+    /**
+     * Points the field at the given position, rebuilding it if the position is on a
+     * different tile than last time or the graph has changed since.
+     *
+     * @param targetWorld The target position in world coordinates
+     */
+    public void update(Vector2 targetWorld) {
+        TileNode tile = graph.worldToTile(targetWorld);
+        if (tile != null && tile.isObstacle) {
+            tile = graph.findNearestNonObstacleNode(targetWorld);
+        }
+        if (tile == target && version == graph.getVersion()) {
+            return;
+        }
+        target = tile;
+        version = graph.getVersion();
+        build();
+    }
+
+    /**
+     * Returns the number of steps from the given tile to the target, or
+     * {@link #UNREACHABLE} if there is no path.
+     */
+    public int getDistance(TileNode tile) {
+        return tile == null ? UNREACHABLE : distances[tile.getIndex()];
+    }
+
+    /**
+     * Returns the neighbour of a tile that is one step closer to the target. Of several
+     * equally close neighbours the one nearest to the target in a straight line is taken,
+     * which keeps the descent close to the direct line.
+     *
+     * @param tile The tile to step from
+     * @return The next tile, or null if the tile is the target or cannot reach it
+     */
+    public TileNode getNextTile(TileNode tile) {
+        int index = tile.getIndex();
+        int distance = distances[index];
+        if (distance == 0 || distance == UNREACHABLE) {
+            return null;
+        }
+        int best = -1;
+        int bestSpread = Integer.MAX_VALUE;
+        int mask = grid.getNeighbourMask(index) & 0xF;
+        while (mask != 0) {
+            int d = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            int neighbour = grid.getNeighbour(index, d);
+            if (distances[neighbour] == distance - 1) {
+                TileNode node = grid.getNode(neighbour);
+                int dx = node.x - target.x;
+                int dy = node.y - target.y;
+                int spread = dx * dx + dy * dy;
+                if (spread < bestSpread) {
+                    bestSpread = spread;
+                    best = neighbour;
+                }
+            }
+        }
+        return best < 0 ? null : grid.getNode(best);
+    }
+
+    /** Returns the tile the field leads to, or null if it has not been pointed anywhere. */
+    public TileNode getTarget() {
+        return target;
+    }
+
+    /** Returns how many times the field has been rebuilt. */
+    public long getRebuilds() {
+        return rebuilds;
+    }
+
+    private void build() {
+        rebuilds++;
+        Arrays.fill(distances, UNREACHABLE);
+        if (target == null || target.isObstacle) {
+            return;
+        }
+        int head = 0;
+        int tail = 0;
+        distances[target.getIndex()] = 0;
+        queue[tail++] = target.getIndex();
+        while (head < tail) {
+            int index = queue[head++];
+            int next = distances[index] + 1;
+            int mask = grid.getNeighbourMask(index) & 0xF;
+            while (mask != 0) {
+                int d = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                int neighbour = grid.getNeighbour(index, d);
+                if (distances[neighbour] == UNREACHABLE) {
+                    distances[neighbour] = next;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.Connection;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Dense grid implementation of {@link IndexedGraph} used for pathfinding.
+ *
+ * Instead of every node owning a list of edge objects, obstacles are kept in a
+ * {@code long[]} bitset and adjacency is implicit: each cell stores a one byte mask of
+ * which of its neighbours can be entered. Edges are only created the first time A*
+ * relaxes them and are then reused, so a search allocates nothing once warmed up.
+ *
+ * Cells are indexed the same way as {@link TileNode#getIndex()}, i.e. x * HEIGHT + y.
+ *
+ * This class is not thread-safe: {@link #getConnections(TileNode)} returns a shared array.
+ * Searches on other threads should use their own copy, see {@link #GridGraph(GridGraph)}.
+ */
+public class GridGraph implements IndexedGraph<TileNode> {
+    /** Neighbour directions, in mask bit order. Orthogonal directions come first. */
+    public static final int WEST = 0;
+    public static final int SOUTH = 1;
+    public static final int EAST = 2;
+    public static final int NORTH = 3;
+    public static final int SOUTH_WEST = 4;
+    public static final int SOUTH_EAST = 5;
+    public static final int NORTH_EAST = 6;
+    public static final int NORTH_WEST = 7;
+
+    private static final int DIRECTIONS = 8;
+    private static final int[] DX = {-1, 0, 1, 0, -1, 1, 1, -1};
+    private static final int[] DY = {0, -1, 0, 1, -1, -1, 1, 1};
+    private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+
+    public final int WIDTH;
+    public final int HEIGHT;
+
+    private final TileNode[] nodes;
+    /** One bit per cell, set if the cell is an obstacle */
+    private final long[] obstacles;
+    /** One byte per cell; bit d is set if the neighbour in direction d can be entered */
+    private final byte[] neighbours;
+    /** Edge cache indexed by cell * directions + direction; filled in lazily */
+    private final TileEdge[] edges;
+    /** Number of directions a cell can be left in: 4, or 8 with diagonal moves */
+    private final int directions;
+    /** Difference in cell index for a step in each direction */
+    private final int[] offsets;
+    /** Whether diagonal moves are allowed (never across a blocked corner) */
+    private final boolean diagonal;
+
+    /** Incremented on every obstacle change */
+    private int version;
+
+    /** Tiles whose clearance is below the minimum are closed as well; null if none are */
+    private ClearanceField clearance;
+    private float minClearance;
+
+    /** Scratch array returned by getConnections */
+    @SuppressWarnings("unchecked")
+    private final Array<Connection<TileNode>> connections = new Array<>(false, DIRECTIONS, Connection.class);
+
+    /**
+     * Builds a grid graph over the given nodes, taking obstacles from
+     * {@link TileNode#isObstacle}.
+     *
+     * @param nodes    The nodes of the grid, indexed by {@link TileNode#getIndex()}
+     * @param width    Width of the grid in cells
+     * @param height   Height of the grid in cells
+     * @param diagonal Whether diagonal moves are allowed
+     */
+    public GridGraph(TileNode[] nodes, int width, int height, boolean diagonal) {
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.nodes = nodes;
+        this.diagonal = diagonal;
+        this.obstacles = new long[(nodes.length + 63) >>> 6];
+        this.neighbours = new byte[nodes.length];
+        this.directions = diagonal ? DIRECTIONS : 4;
+        this.edges = new TileEdge[nodes.length * directions];
+        this.offsets = new int[DIRECTIONS];
+        for (int d = 0; d < DIRECTIONS; d++) {
+            offsets[d] = DX[d] * height + DY[d];
+        }
+        refresh();
+    }
+
+    /**
+     * Creates a copy of another grid graph as it is now. The copy shares the (immutable)
+     * coordinates of the source's nodes but has its own obstacles, masks and edge cache,
+     * so it can be searched on another thread while the source keeps changing.
+     *
+     * @param source The graph to copy; must not be modified while it is being copied
+     */
+    public GridGraph(GridGraph source) {
+        this.WIDTH = source.WIDTH;
+        this.HEIGHT = source.HEIGHT;
+        this.nodes = source.nodes;
+        this.diagonal = source.diagonal;
+        this.obstacles = source.obstacles.clone();
+        this.neighbours = source.neighbours.clone();
+        this.directions = source.directions;
+        this.edges = new TileEdge[nodes.length * directions];
+        this.offsets = source.offsets;
+        this.version = source.version;
+        // The obstacle bits already include the tiles closed for clearance
+    }
+
+    /**
+     * Makes this graph's obstacles and masks equal to those of another graph over the same
+     * nodes, e.g. a copy taken earlier with {@link #GridGraph(GridGraph)}. The nodes' own
+     * obstacle flags are left alone. The version is bumped rather than copied, so anything
+     * derived from this graph still notices the change.
+     *
+     * @param source The graph to copy from
+     */
+    public void copyFrom(GridGraph source) {
+        System.arraycopy(source.obstacles, 0, obstacles, 0, obstacles.length);
+        System.arraycopy(source.neighbours, 0, neighbours, 0, neighbours.length);
+        version++;
+    }
+
+    /**
+     * Re-reads every cell's obstacle flag from its {@link TileNode} and recomputes
+     * all neighbour masks.
+     */
+    public void refresh() {
+        version++;
+        for (int i = 0; i < nodes.length; i++) {
+            setBit(i, isBlocked(i));
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            updateMask(i);
+        }
+    }
+
+    /**
+     * Marks a single cell as blocked or free and updates the masks around it.
+     *
+     * @param index    The index of the cell
+     * @param obstacle Whether the cell is now an obstacle
+     */
+    public void setObstacle(int index, boolean obstacle) {
+        version++;
+        nodes[index].isObstacle = obstacle;
+        setBit(index, isBlocked(index));
+        int x = index / HEIGHT;
+        int y = index % HEIGHT;
+        updateMask(index);
+        // Diagonal moves depend on the orthogonal neighbours, so refresh the full ring
+        for (int d = 0; d < DIRECTIONS; d++) {
+            if (inBounds(x + DX[d], y + DY[d])) {
+                updateMask(index + offsets[d]);
+            }
+        }
+    }
+
+    /**
+     * Marks a rectangular block of cells as blocked or free and updates the masks of
+     * those cells and the ring of cells around them. Cells outside the grid are ignored.
+     *
+     * @param startX   Left column of the block (inclusive)
+     * @param startY   Bottom row of the block (inclusive)
+     * @param endX     Right column of the block (exclusive)
+     * @param endY     Top row of the block (exclusive)
+     * @param obstacle Whether the cells are now obstacles
+     */
+    public void setObstacleRegion(int startX, int startY, int endX, int endY, boolean obstacle) {
+        startX = Math.max(startX, 0);
+        startY = Math.max(startY, 0);
+        endX = Math.min(endX, WIDTH);
+        endY = Math.min(endY, HEIGHT);
+        if (startX >= endX || startY >= endY) {
+            return;
+        }
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                nodes[x * HEIGHT + y].isObstacle = obstacle;
+            }
+        }
+        refreshRegion(startX, startY, endX, endY);
+    }
+
+    /**
+     * Re-reads the obstacle flags of a rectangular block of cells, e.g. after the clearance
+     * around them changed, and updates the masks of those cells and the ring around them.
+     * Cells outside the grid are ignored.
+     *
+     * @param startX Left column of the block (inclusive)
+     * @param startY Bottom row of the block (inclusive)
+     * @param endX   Right column of the block (exclusive)
+     * @param endY   Top row of the block (exclusive)
+     */
+    public void refreshRegion(int startX, int startY, int endX, int endY) {
+        startX = Math.max(startX, 0);
+        startY = Math.max(startY, 0);
+        endX = Math.min(endX, WIDTH);
+        endY = Math.min(endY, HEIGHT);
+        if (startX >= endX || startY >= endY) {
+            return;
+        }
+        version++;
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                int index = x * HEIGHT + y;
+                setBit(index, isBlocked(index));
+            }
+        }
+        int maskEndX = Math.min(endX + 1, WIDTH);
+        int maskEndY = Math.min(endY + 1, HEIGHT);
+        for (int x = Math.max(startX - 1, 0); x < maskEndX; x++) {
+            for (int y = Math.max(startY - 1, 0); y < maskEndY; y++) {
+                updateMask(x * HEIGHT + y);
+            }
+        }
+    }
+
+    /**
+     * Also closes free cells that are too narrow for the agents: a cell is closed if even a
+     * point half a cell away from its centre would be closer than minClearance to an
+     * obstacle. The field must be kept up to date by the caller, who should call
+     * {@link #refreshRegion} for the cells whose clearance changed.
+     *
+     * @param clearance    Distances to the nearest obstacle, or null to close nothing extra
+     * @param minClearance Radius of the agents, in cells
+     */
+    public void setClearance(ClearanceField clearance, float minClearance) {
+        this.clearance = clearance;
+        this.minClearance = minClearance;
+        refresh();
+    }
+
+    /**
+     * Returns a counter that changes every time an obstacle is added or removed, so that
+     * anything derived from the grid (cached paths, jump tables) knows to rebuild.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /** Returns whether the cell with the given index is an obstacle. */
+    public boolean isObstacle(int index) {
+        return (obstacles[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** Returns whether the given cell is an obstacle. Cells outside the grid count as obstacles. */
+    public boolean isObstacle(int x, int y) {
+        return !inBounds(x, y) || isObstacle(x * HEIGHT + y);
+    }
+
+    /** Returns whether the given cell can be walked on. */
+    public boolean isWalkable(int x, int y) {
+        return inBounds(x, y) && !isObstacle(x * HEIGHT + y);
+    }
+
+    /** Returns the neighbour mask of a cell; bit d is set if direction d can be entered. */
+    public int getNeighbourMask(int index) {
+        return neighbours[index] & 0xFF;
+    }
+
+    /**
+     * Returns the index of the cell next to the given one in the given direction. The
+     * caller must make sure the neighbour exists, see {@link #getNeighbourMask(int)}.
+     */
+    public int getNeighbour(int index, int direction) {
+        return index + offsets[direction];
+    }
+
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    public TileNode getNode(int index) {
+        return nodes[index];
+    }
+
+    public TileNode getNode(int x, int y) {
+        return inBounds(x, y) ? nodes[x * HEIGHT + y] : null;
+    }
+
+    @Override
+    public int getIndex(TileNode node) {
+        return node.getIndex();
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    @Override
+    public Array<Connection<TileNode>> getConnections(TileNode fromNode) {
+        // Filled in place; the entries are overwritten on the next call so clearing is unnecessary
+        Connection<TileNode>[] items = connections.items;
+        TileEdge[] edges = this.edges;
+        int size = 0;
+        int index = fromNode.getIndex();
+        int mask = neighbours[index] & 0xFF;
+        int slot = index * directions;
+        while (mask != 0) {
+            int d = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            TileEdge edge = edges[slot + d];
+            items[size++] = edge != null ? edge : createEdge(index, d);
+        }
+        connections.size = size;
+        return connections;
+    }
+
+    /**
+     * Returns the edge leaving a cell in the given direction. The caller must make sure
+     * the move is allowed, see {@link #getNeighbourMask(int)}.
+     */
+    TileEdge getEdge(int index, int direction) {
+        TileEdge edge = edges[index * directions + direction];
+        return edge != null ? edge : createEdge(index, direction);
+    }
+
+    /**
+     * Creates and caches the edge leaving a cell in the given direction.
+     * Edges are immutable so they can safely be kept by the pathfinder's node records.
+     */
+    private TileEdge createEdge(int index, int direction) {
+        float cost = direction < 4 ? 1 : DIAGONAL_COST;
+        TileEdge edge = new TileEdge(nodes[index], nodes[index + offsets[direction]], cost);
+        edges[index * directions + direction] = edge;
+        return edge;
+    }
+
+    /** Returns whether a cell is an obstacle or too narrow for the agents. */
+    private boolean isBlocked(int index) {
+        return nodes[index].isObstacle
+            || (clearance != null && clearance.get(index) + 0.5f < minClearance);
+    }
+
+    private void setBit(int index, boolean obstacle) {
+        if (obstacle) {
+            obstacles[index >>> 6] |= 1L << index;
+        } else {
+            obstacles[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private void updateMask(int index) {
+        int x = index / HEIGHT;
+        int y = index % HEIGHT;
+        int mask = 0;
+        for (int d = 0; d < 4; d++) {
+            if (isWalkable(x + DX[d], y + DY[d])) {
+                mask |= 1 << d;
+            }
+        }
+        if (diagonal) {
+            for (int d = 4; d < DIRECTIONS; d++) {
+                // No corner cutting: both orthogonal cells next to the diagonal must be free
+                if (isWalkable(x + DX[d], y + DY[d]) && isWalkable(x + DX[d], y) && isWalkable(x, y + DY[d])) {
+                    mask |= 1 << d;
+                }
+            }
+        }
+        neighbours[index] = (byte) mask;
+    }
+
+    private boolean inBounds(int x, int y) {
+        return x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT;
+    }
+}
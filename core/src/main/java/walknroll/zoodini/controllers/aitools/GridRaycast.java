@@ -0,0 +1,176 @@
+package walknroll.zoodini.controllers.aitools;
+
+/**
+ * Allocation-free line of sight tests against the obstacle bitset of a {@link GridGraph}.
+ *
+ * Rays are walked with a supercover DDA (Amanatides and Woo): every tile the segment
+ * passes through is visited, and where it passes exactly through a tile corner both
+ * tiles beside the corner are checked as well, so a ray cannot slip between two walls
+ * that only touch diagonally. All coordinates are in tiles, i.e. world coordinates
+ * multiplied by the graph density. Tiles outside the grid count as obstacles.
+ *
+ * Tests for a wide agent can use a {@link ClearanceField} to skip most of the work: a
+ * tile whose clearance exceeds the agent radius by more than half its diagonal keeps the
+ * agent off walls wherever the centre line crosses it, so only rays that pass close to a
+ * wall need their edges cast.
+ */
+public final class GridRaycast {
+    /** Distance from a tile's centre to its corners */
+    private static final float HALF_DIAGONAL = (float) (Math.sqrt(2) / 2);
+
+    /** Results of {@link #walk} */
+    private static final int BLOCKED = 0;
+    private static final int CLEAR = 1;
+    private static final int NEAR_WALL = 2;
+
+    private GridRaycast() {
+    }
+
+    /**
+     * Returns whether no obstacle tile lies on the segment between two points.
+     *
+     * @param grid     The grid to test against
+     * @param x0       Start x, in tiles
+     * @param y0       Start y, in tiles
+     * @param x1       End x, in tiles
+     * @param y1       End y, in tiles
+     * @param checkEnd Whether the tile containing the end point is tested too
+     */
+    public static boolean isClear(GridGraph grid, float x0, float y0, float x1, float y1, boolean checkEnd) {
+        return walk(grid, null, 0, x0, y0, x1, y1, checkEnd) != BLOCKED;
+    }
+
+    /**
+     * Walks the tiles on a segment. Returns {@link #BLOCKED} if one of them is an obstacle,
+     * otherwise {@link #NEAR_WALL} if one of them has less than the given clearance, or
+     * {@link #CLEAR}.
+     */
+    private static int walk(GridGraph grid, ClearanceField clearance, float minClearance,
+                            float x0, float y0, float x1, float y1, boolean checkEnd) {
+        int result = CLEAR;
+        int x = (int) Math.floor(x0);
+        int y = (int) Math.floor(y0);
+        int endX = (int) Math.floor(x1);
+        int endY = (int) Math.floor(y1);
+        if (x == endX && y == endY) {
+            return checkEnd && grid.isObstacle(x, y) ? BLOCKED : near(grid, clearance, minClearance, x, y);
+        }
+        if (grid.isObstacle(x, y)) {
+            return BLOCKED;
+        }
+        result = near(grid, clearance, minClearance, x, y);
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        // Distance along the segment (0..1) between vertical and horizontal grid lines
+        float deltaX = dx == 0 ? Float.POSITIVE_INFINITY : Math.abs(1 / dx);
+        float deltaY = dy == 0 ? Float.POSITIVE_INFINITY : Math.abs(1 / dy);
+        // Distance along the segment to the first vertical and horizontal grid line
+        float nextX = dx == 0 ? Float.POSITIVE_INFINITY : (dx > 0 ? x + 1 - x0 : x0 - x) * deltaX;
+        float nextY = dy == 0 ? Float.POSITIVE_INFINITY : (dy > 0 ? y + 1 - y0 : y0 - y) * deltaY;
+
+        int steps = Math.abs(endX - x) + Math.abs(endY - y);
+        while (steps > 0) {
+            if (nextX < nextY) {
+                x += stepX;
+                nextX += deltaX;
+                steps--;
+            } else if (nextY < nextX) {
+                y += stepY;
+                nextY += deltaY;
+                steps--;
+            } else {
+                if (grid.isObstacle(x + stepX, y) || grid.isObstacle(x, y + stepY)) {
+                    return BLOCKED;
+                }
+                x += stepX;
+                y += stepY;
+                nextX += deltaX;
+                nextY += deltaY;
+                steps -= 2;
+            }
+            if (steps <= 0 && !checkEnd) {
+                // The end tile may still be too close to a wall for the strip around the line
+                if (result == CLEAR) {
+                    result = near(grid, clearance, minClearance, x, y);
+                }
+                break;
+            }
+            if (grid.isObstacle(x, y)) {
+                return BLOCKED;
+            }
+            if (result == CLEAR) {
+                result = near(grid, clearance, minClearance, x, y);
+            }
+        }
+        return result;
+    }
+
+    private static int near(GridGraph grid, ClearanceField clearance, float minClearance, int x, int y) {
+        if (clearance == null || clearance.get(x * grid.HEIGHT + y) >= minClearance) {
+            return CLEAR;
+        }
+        return NEAR_WALL;
+    }
+
+    /**
+     * Returns whether a circle of the given radius can move along the segment between two
+     * points without overlapping an obstacle tile. Tests the centre line and parallel
+     * rays across the swept strip, out to both of its edges and at most a tile apart, so
+     * that no tile overlapping the strip can lie between two rays.
+     *
+     * @param grid     The grid to test against
+     * @param x0       Start x, in tiles
+     * @param y0       Start y, in tiles
+     * @param x1       End x, in tiles
+     * @param y1       End y, in tiles
+     * @param radius   Radius of the circle, in tiles
+     * @param checkEnd Whether the tiles containing the end points of the rays are tested too
+     */
+    public static boolean isClear(GridGraph grid, float x0, float y0, float x1, float y1, float radius,
+                                  boolean checkEnd) {
+        return isClear(grid, null, x0, y0, x1, y1, radius, checkEnd);
+    }
+
+    /**
+     * Like {@link #isClear(GridGraph, float, float, float, float, float, boolean)}, but only
+     * casts the edges of the strip if the centre line passes a tile that is too close to
+     * a wall according to the clearance field.
+     *
+     * @param grid      The grid to test against
+     * @param clearance The clearance of the grid's tiles, or null to always cast the edges
+     * @param x0        Start x, in tiles
+     * @param y0        Start y, in tiles
+     * @param x1        End x, in tiles
+     * @param y1        End y, in tiles
+     * @param radius    Radius of the circle, in tiles
+     * @param checkEnd  Whether the tiles containing the end points of the rays are tested too
+     */
+    public static boolean isClear(GridGraph grid, ClearanceField clearance, float x0, float y0,
+                                  float x1, float y1, float radius, boolean checkEnd) {
+        int centre = walk(grid, radius > 0 ? clearance : null, radius + HALF_DIAGONAL, x0, y0, x1, y1, checkEnd);
+        if (centre != NEAR_WALL && (centre == BLOCKED || clearance != null)) {
+            return centre == CLEAR;
+        }
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0 || radius <= 0) {
+            return true;
+        }
+        // Unit normal of the centre line; agents wider than a tile need more than the two edges
+        float nx = -dy / length;
+        float ny = dx / length;
+        int rays = Math.max(1, (int) Math.ceil(radius));
+        for (int i = 1; i <= rays; i++) {
+            float ox = nx * radius * i / rays;
+            float oy = ny * radius * i / rays;
+            if (!isClear(grid, x0 + ox, y0 + oy, x1 + ox, y1 + oy, checkEnd)
+                || !isClear(grid, x0 - ox, y0 - oy, x1 - ox, y1 - oy, checkEnd)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,349 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.Connection;
+import com.badlogic.gdx.ai.pfa.GraphPath;
+import com.badlogic.gdx.ai.pfa.Heuristic;
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import com.badlogic.gdx.ai.pfa.PathFinderRequest;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+import com.badlogic.gdx.utils.BinaryHeap;
+import com.badlogic.gdx.utils.IntArray;
+import java.util.Arrays;
+
+/**
+ * Jump Point Search over a {@link GridGraph}, with or without diagonal moves.
+ *
+ * Instead of pushing every neighbour onto the open list, the search "jumps" in a straight
+ * line until it reaches a cell that could be the corner of an optimal path, and only those
+ * jump points are expanded. The jump rules are the ones PathFinding.js uses for grids
+ * without diagonal moves, and for grids where diagonal moves may not cut corners:
+ * <ul>
+ *     <li>Moving horizontally, a cell is a jump point if the cell above (below) it is open
+ *     while the cell above (below) the one we came from is blocked.</li>
+ *     <li>Moving vertically, the same test is applied to the left and right neighbours.
+ *     Without diagonal moves a cell is also a jump point if a horizontal jump from it
+ *     finds one.</li>
+ *     <li>Moving diagonally, a cell is a jump point if a horizontal or vertical jump from
+ *     it finds one. The jump stops before any step that would cut a blocked corner.</li>
+ * </ul>
+ * From a jump point the search only continues in directions that do not point back the
+ * way it came. The resulting paths are exactly as long as the ones found by A*. The node path that is
+ * returned contains every tile along the way, not only the jump points, so it can be used
+ * anywhere an {@link IndexedAStarPathFinder} result is expected.
+ *
+ * This class is not thread-safe.
+ */
+public class JumpPointPathFinder implements PathFinder<TileNode> {
+    private static final int UNVISITED = 0;
+    private static final int OPEN = 1;
+    private static final int CLOSED = 2;
+
+    /** Direction offsets in {@link GridGraph} order: the four orthogonals, then the diagonals */
+    protected static final int[] DX = {-1, 0, 1, 0, -1, 1, 1, -1};
+    protected static final int[] DY = {0, -1, 0, 1, -1, -1, 1, 1};
+    private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+
+    protected final GridGraph graph;
+
+    /** Search statistics, in the same format as {@link IndexedAStarPathFinder} */
+    public final IndexedAStarPathFinder.Metrics metrics = new IndexedAStarPathFinder.Metrics();
+    /** Number of cells stepped over while jumping during the last search */
+    public int jumpSteps;
+
+    private final BinaryHeap<Record> openList = new BinaryHeap<>();
+    private final Record[] records;
+    private int searchId;
+
+    private final IntArray jumpPoints = new IntArray();
+
+    public JumpPointPathFinder(GridGraph graph) {
+        this.graph = graph;
+        this.records = new Record[graph.getNodeCount()];
+    }
+
+    @Override
+    public boolean searchNodePath(TileNode startNode, TileNode endNode, Heuristic<TileNode> heuristic,
+                                  GraphPath<TileNode> outPath) {
+        if (!search(startNode, endNode, heuristic)) {
+            return false;
+        }
+        collectJumpPoints(endNode.getIndex());
+        int prev = jumpPoints.get(jumpPoints.size - 1);
+        outPath.add(graph.getNode(prev));
+        for (int i = jumpPoints.size - 2; i >= 0; i--) {
+            int next = jumpPoints.get(i);
+            int direction = directionBetween(prev, next);
+            int step = DX[direction] * graph.HEIGHT + DY[direction];
+            for (int index = prev; index != next; ) {
+                index += step;
+                outPath.add(graph.getNode(index));
+            }
+            prev = next;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean searchConnectionPath(TileNode startNode, TileNode endNode, Heuristic<TileNode> heuristic,
+                                        GraphPath<Connection<TileNode>> outPath) {
+        if (!search(startNode, endNode, heuristic)) {
+            return false;
+        }
+        collectJumpPoints(endNode.getIndex());
+        int prev = jumpPoints.get(jumpPoints.size - 1);
+        for (int i = jumpPoints.size - 2; i >= 0; i--) {
+            int next = jumpPoints.get(i);
+            int direction = directionBetween(prev, next);
+            int step = DX[direction] * graph.HEIGHT + DY[direction];
+            for (int index = prev; index != next; index += step) {
+                outPath.add(graph.getEdge(index, direction));
+            }
+            prev = next;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the whole search at once; jump point searches are short enough that they are
+     * not worth splitting across frames.
+     */
+    @Override
+    public boolean search(PathFinderRequest<TileNode> request, long timeToRun) {
+        request.resultPath.clear();
+        request.pathFound = searchNodePath(request.startNode, request.endNode, request.heuristic,
+            request.resultPath);
+        request.statusChanged = false;
+        return true;
+    }
+
+    /**
+     * Finds the next jump point when leaving cell (x, y) in the given direction.
+     * Subclasses may replace the scan with a table lookup.
+     *
+     * @param x         Column of the cell being expanded
+     * @param y         Row of the cell being expanded
+     * @param direction One of the {@link GridGraph} directions
+     * @param goalX     Column of the goal
+     * @param goalY     Row of the goal
+     * @return The index of the jump point, or -1 if the jump runs into a wall
+     */
+    protected int findSuccessor(int x, int y, int direction, int goalX, int goalY) {
+        if (direction >= 4) {
+            return jumpDiagonal(x, y, direction, goalX, goalY);
+        }
+        if (DX[direction] != 0) {
+            return jumpHorizontal(x, y, DX[direction], goalX, goalY);
+        }
+        return jumpVertical(x, y, DY[direction], goalX, goalY);
+    }
+
+    /**
+     * Called at the start of every search, before any jumps are made.
+     */
+    protected void prepare() {
+    }
+
+    private int jumpHorizontal(int x, int y, int dx, int goalX, int goalY) {
+        while (true) {
+            x += dx;
+            jumpSteps++;
+            if (!graph.isWalkable(x, y)) {
+                return -1;
+            }
+            if (x == goalX && y == goalY) {
+                return x * graph.HEIGHT + y;
+            }
+            if ((graph.isWalkable(x, y - 1) && !graph.isWalkable(x - dx, y - 1))
+                || (graph.isWalkable(x, y + 1) && !graph.isWalkable(x - dx, y + 1))) {
+                return x * graph.HEIGHT + y;
+            }
+        }
+    }
+
+    private int jumpVertical(int x, int y, int dy, int goalX, int goalY) {
+        while (true) {
+            y += dy;
+            jumpSteps++;
+            if (!graph.isWalkable(x, y)) {
+                return -1;
+            }
+            if (x == goalX && y == goalY) {
+                return x * graph.HEIGHT + y;
+            }
+            if ((graph.isWalkable(x - 1, y) && !graph.isWalkable(x - 1, y - dy))
+                || (graph.isWalkable(x + 1, y) && !graph.isWalkable(x + 1, y - dy))) {
+                return x * graph.HEIGHT + y;
+            }
+            // A turn may be needed here to reach a jump point to the side
+            if (!graph.isDiagonal()
+                && (jumpHorizontal(x, y, 1, goalX, goalY) != -1 || jumpHorizontal(x, y, -1, goalX, goalY) != -1)) {
+                return x * graph.HEIGHT + y;
+            }
+        }
+    }
+
+    private int jumpDiagonal(int x, int y, int direction, int goalX, int goalY) {
+        int dx = DX[direction];
+        int dy = DY[direction];
+        int horizontal = dx < 0 ? GridGraph.WEST : GridGraph.EAST;
+        int vertical = dy < 0 ? GridGraph.SOUTH : GridGraph.NORTH;
+        while (true) {
+            // No corner cutting: both cells beside the diagonal step must be open
+            if (!graph.isWalkable(x + dx, y) || !graph.isWalkable(x, y + dy)) {
+                return -1;
+            }
+            x += dx;
+            y += dy;
+            jumpSteps++;
+            if (!graph.isWalkable(x, y)) {
+                return -1;
+            }
+            if (x == goalX && y == goalY) {
+                return x * graph.HEIGHT + y;
+            }
+            if (findSuccessor(x, y, horizontal, goalX, goalY) != -1
+                || findSuccessor(x, y, vertical, goalX, goalY) != -1) {
+                return x * graph.HEIGHT + y;
+            }
+        }
+    }
+
+    /**
+     * Runs the search itself, leaving the parent chain of the goal in the records.
+     */
+    private boolean search(TileNode startNode, TileNode endNode, Heuristic<TileNode> heuristic) {
+        prepare();
+        metrics.reset();
+        jumpSteps = 0;
+        openList.clear();
+        if (++searchId < 0) {
+            // Wrapped around; stale records could look current, so drop them all
+            Arrays.fill(records, null);
+            searchId = 1;
+        }
+
+        int goal = endNode.getIndex();
+        Record start = getRecord(startNode.getIndex());
+        start.parent = -1;
+        start.direction = -1;
+        start.cost = 0;
+        start.category = OPEN;
+        openList.add(start, heuristic.estimate(startNode, endNode));
+        metrics.openListAdditions++;
+
+        while (openList.size > 0) {
+            Record current = openList.pop();
+            current.category = CLOSED;
+            metrics.visitedNodes++;
+            if (current.index == goal) {
+                return true;
+            }
+
+            int x = current.index / graph.HEIGHT;
+            int y = current.index % graph.HEIGHT;
+            int mask = graph.getNeighbourMask(current.index);
+            while (mask != 0) {
+                int d = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                if (!isPruned(current.direction, d)) {
+                    int successor = findSuccessor(x, y, d, endNode.x, endNode.y);
+                    if (successor >= 0) {
+                        relax(current, successor, d, endNode, heuristic);
+                    }
+                }
+            }
+            metrics.openListPeak = Math.max(metrics.openListPeak, openList.size);
+        }
+        return false;
+    }
+
+    /**
+     * Neighbour pruning: never head back the way we came. After a horizontal move that
+     * leaves forward, up and down (and the diagonals between them); after a diagonal move
+     * only its two components and the diagonal itself.
+     */
+    private boolean isPruned(int arrival, int direction) {
+        if (arrival < 0) {
+            return false;
+        }
+        return DX[direction] * DX[arrival] < 0 || DY[direction] * DY[arrival] < 0;
+    }
+
+    private void relax(Record current, int successor, int direction, TileNode endNode,
+                       Heuristic<TileNode> heuristic) {
+        int dx = Math.abs(successor / graph.HEIGHT - current.index / graph.HEIGHT);
+        int dy = Math.abs(successor % graph.HEIGHT - current.index % graph.HEIGHT);
+        // Jumps are straight lines, so every step costs the same
+        int steps = Math.max(dx, dy);
+        float cost = current.cost + (direction >= 4 ? steps * DIAGONAL_COST : steps);
+
+        Record record = getRecord(successor);
+        if (record.category == CLOSED) {
+            return;
+        }
+        if (record.category == OPEN) {
+            if (record.cost <= cost) {
+                return;
+            }
+            record.parent = current.index;
+            record.direction = direction;
+            record.cost = cost;
+            openList.setValue(record, cost + heuristic.estimate(graph.getNode(successor), endNode));
+            return;
+        }
+        record.parent = current.index;
+        record.direction = direction;
+        record.cost = cost;
+        record.category = OPEN;
+        openList.add(record, cost + heuristic.estimate(graph.getNode(successor), endNode));
+        metrics.openListAdditions++;
+    }
+
+    /** Returns the record of a cell, resetting it if it belongs to an older search. */
+    private Record getRecord(int index) {
+        Record record = records[index];
+        if (record == null) {
+            record = new Record(index);
+            records[index] = record;
+        }
+        if (record.searchId != searchId) {
+            record.searchId = searchId;
+            record.category = UNVISITED;
+        }
+        return record;
+    }
+
+    /** Fills {@link #jumpPoints} with the jump points from the goal back to the start. */
+    private void collectJumpPoints(int goal) {
+        jumpPoints.clear();
+        for (int index = goal; index >= 0; index = records[index].parent) {
+            jumpPoints.add(index);
+        }
+    }
+
+    private int directionBetween(int from, int to) {
+        int dx = Integer.signum(to / graph.HEIGHT - from / graph.HEIGHT);
+        int dy = Integer.signum(to % graph.HEIGHT - from % graph.HEIGHT);
+        for (int d = 0; d < DX.length; d++) {
+            if (DX[d] == dx && DY[d] == dy) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /** Open/closed bookkeeping for one cell */
+    private static class Record extends BinaryHeap.Node {
+        final int index;
+        int parent;
+        int direction;
+        float cost;
+        int category;
+        int searchId;
+
+        Record(int index) {
+            super(0);
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package walknroll.zoodini.controllers.aitools;
+
+/**
+ * Jump Point Search with precomputed jump distances (JPS+).
+ *
+ * For every cell and each of the four orthogonal directions a table stores how far the next jump
+ * point is: a positive value n means there is a jump point n cells away, while a value
+ * of zero or less means the jump runs into a wall after -n cells. Jumps then become a
+ * single lookup instead of a scan. The only goal-dependent part of a jump, stopping at
+ * the goal or at the row from which the goal can be reached with one turn, is checked
+ * when the table is read. With diagonal moves, diagonal jumps are still walked one step
+ * at a time, but the horizontal and vertical jumps tried at every step are lookups.
+ *
+ * The table is rebuilt in full whenever the {@link GridGraph} version changes, which only
+ * happens when a door opens.
+ */
+public class JumpPointPlusPathFinder extends JumpPointPathFinder {
+    /** Jump distances indexed by cell * 4 + direction */
+    private final short[] distances;
+    /** Grid version the table was built for */
+    private int builtVersion = -1;
+
+    public JumpPointPlusPathFinder(GridGraph graph) {
+        super(graph);
+        this.distances = new short[graph.getNodeCount() * 4];
+    }
+
+    @Override
+    protected void prepare() {
+        if (builtVersion != graph.getVersion()) {
+            build();
+            builtVersion = graph.getVersion();
+        }
+    }
+
+    @Override
+    protected int findSuccessor(int x, int y, int direction, int goalX, int goalY) {
+        if (direction >= 4) {
+            return super.findSuccessor(x, y, direction, goalX, goalY);
+        }
+        int index = x * graph.HEIGHT + y;
+        int distance = distances[index * 4 + direction];
+        int reach = Math.abs(distance);
+        jumpSteps++;
+
+        if (DX[direction] != 0) {
+            // The goal is straight ahead and nothing stops us before it
+            int ahead = (goalX - x) * DX[direction];
+            if (goalY == y && ahead > 0 && ahead <= reach) {
+                return goalX * graph.HEIGHT + goalY;
+            }
+        } else {
+            int ahead = (goalY - y) * DY[direction];
+            if (ahead > 0 && ahead <= reach) {
+                if (goalX == x) {
+                    return goalX * graph.HEIGHT + goalY;
+                }
+                // Crossing the goal's row: stop there if the goal can be walked to from it.
+                // Rows with a horizontal jump point are already stops in the table. With
+                // diagonal moves the diagonal jumps find such rows instead.
+                if (!graph.isDiagonal() && (distance <= 0 || ahead < distance)) {
+                    int turn = goalX > x ? GridGraph.EAST : GridGraph.WEST;
+                    int row = x * graph.HEIGHT + goalY;
+                    if (Math.abs(goalX - x) <= -distances[row * 4 + turn]) {
+                        return row;
+                    }
+                }
+            }
+        }
+
+        if (distance > 0) {
+            return (x + DX[direction] * distance) * graph.HEIGHT + y + DY[direction] * distance;
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the jump distances of every cell. Horizontal distances are computed first,
+     * because a vertical jump also stops wherever a horizontal jump would find something.
+     */
+    private void build() {
+        int width = graph.WIDTH;
+        int height = graph.HEIGHT;
+        for (int y = 0; y < height; y++) {
+            // West: cells to the left of x are already done when scanning left to right
+            for (int x = 0; x < width; x++) {
+                distances[(x * height + y) * 4 + GridGraph.WEST] = (short) next(x, y, -1, 0);
+            }
+            for (int x = width - 1; x >= 0; x--) {
+                distances[(x * height + y) * 4 + GridGraph.EAST] = (short) next(x, y, 1, 0);
+            }
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                distances[(x * height + y) * 4 + GridGraph.SOUTH] = (short) next(x, y, 0, -1);
+            }
+            for (int y = height - 1; y >= 0; y--) {
+                distances[(x * height + y) * 4 + GridGraph.NORTH] = (short) next(x, y, 0, 1);
+            }
+        }
+    }
+
+    /**
+     * Computes the jump distance from (x, y) in direction (dx, dy), given that the distance
+     * of the next cell in that direction has already been computed.
+     */
+    private int next(int x, int y, int dx, int dy) {
+        int nx = x + dx;
+        int ny = y + dy;
+        if (!graph.isWalkable(nx, ny)) {
+            return 0;
+        }
+        if (isJumpPoint(nx, ny, dx, dy)) {
+            return 1;
+        }
+        int direction = dx < 0 ? GridGraph.WEST : dx > 0 ? GridGraph.EAST : dy < 0 ? GridGraph.SOUTH : GridGraph.NORTH;
+        int distance = distances[(nx * graph.HEIGHT + ny) * 4 + direction];
+        return distance > 0 ? distance + 1 : distance - 1;
+    }
+
+    /**
+     * Returns whether a jump arriving at (x, y) while moving in direction (dx, dy) has to
+     * stop there regardless of the goal. Mirrors the checks in {@link JumpPointPathFinder}.
+     */
+    private boolean isJumpPoint(int x, int y, int dx, int dy) {
+        if (dx != 0) {
+            return (graph.isWalkable(x, y - 1) && !graph.isWalkable(x - dx, y - 1))
+                || (graph.isWalkable(x, y + 1) && !graph.isWalkable(x - dx, y + 1));
+        }
+        if ((graph.isWalkable(x - 1, y) && !graph.isWalkable(x - 1, y - dy))
+            || (graph.isWalkable(x + 1, y) && !graph.isWalkable(x + 1, y - dy))) {
+            return true;
+        }
+        if (graph.isDiagonal()) {
+            return false;
+        }
+        int index = (x * graph.HEIGHT + y) * 4;
+        return distances[index + GridGraph.EAST] > 0 || distances[index + GridGraph.WEST] > 0;
+    }
+}
@@ -0,0 +1,146 @@
+package walknroll.zoodini.controllers.aitools;
+
+/**
+ * Lookup table from every tile to the walkable tile whose centre is closest in a straight
+ * line. Walkable tiles map to themselves.
+ *
+ * The table is an exact Euclidean distance transform (Felzenszwalb and Huttenlocher): one
+ * pass along each column finds the nearest walkable tile in that column, then one pass
+ * along each row takes the lower envelope of the parabolas (x - x')^2 + dy(x')^2 to pick
+ * the best column. Both passes are linear, so a full build costs O(cells), and a lookup
+ * is a single array read.
+ *
+ * The table is rebuilt on the next lookup after the {@link GridGraph} version changes,
+ * which only happens when a door opens.
+ */
+public class NearestWalkableIndex {
+    /** Marks tiles with no walkable tile in their column, or anywhere at all */
+    private static final int NONE = -1;
+
+    private final GridGraph grid;
+    /** Index of the nearest walkable tile, indexed by {@link TileNode#getIndex()} */
+    private final int[] nearest;
+    /** Row of the nearest walkable tile in the same column, indexed like {@link #nearest} */
+    private final int[] columnNearest;
+    /** Row pass scratch: squared column distance, envelope sites and their boundaries */
+    private final long[] rowCost;
+    private final int[] sites;
+    private final double[] bounds;
+
+    /** Grid version the table was built for */
+    private int version = -1;
+    private long rebuilds;
+
+    public NearestWalkableIndex(GridGraph grid) {
+        this.grid = grid;
+        this.nearest = new int[grid.getNodeCount()];
+        this.columnNearest = new int[grid.getNodeCount()];
+        this.rowCost = new long[grid.WIDTH];
+        this.sites = new int[grid.WIDTH];
+        this.bounds = new double[grid.WIDTH + 1];
+    }
+
+    /**
+     * Returns the walkable tile closest to the given one, which is the tile itself if it
+     * is walkable.
+     *
+     * @param tile A tile of the grid
+     * @return The nearest walkable tile, or null if no tile is walkable
+     */
+    public TileNode get(TileNode tile) {
+        int index = get(tile.getIndex());
+        return index == NONE ? null : grid.getNode(index);
+    }
+
+    /**
+     * Returns the index of the walkable tile closest to the tile with the given index,
+     * or -1 if no tile is walkable.
+     */
+    public int get(int index) {
+        refresh();
+        return nearest[index];
+    }
+
+    /**
+     * Rebuilds the table now if the grid has changed since it was built. Until the grid
+     * changes again, lookups then only read the table and may run on several threads.
+     */
+    public void refresh() {
+        if (version != grid.getVersion()) {
+            build();
+            version = grid.getVersion();
+        }
+    }
+
+    /** Returns how many times the table has been built. */
+    public long getRebuilds() {
+        return rebuilds;
+    }
+
+    private void build() {
+        rebuilds++;
+        int width = grid.WIDTH;
+        int height = grid.HEIGHT;
+
+        // Columns: nearest walkable row below, then keep whichever of that and the one above is closer
+        for (int x = 0; x < width; x++) {
+            int column = x * height;
+            int last = NONE;
+            for (int y = 0; y < height; y++) {
+                if (!grid.isObstacle(column + y)) {
+                    last = y;
+                }
+                columnNearest[column + y] = last;
+            }
+            last = NONE;
+            for (int y = height - 1; y >= 0; y--) {
+                if (!grid.isObstacle(column + y)) {
+                    last = y;
+                }
+                int below = columnNearest[column + y];
+                if (last != NONE && (below == NONE || last - y < y - below)) {
+                    columnNearest[column + y] = last;
+                }
+            }
+        }
+
+        // Rows: lower envelope of the column distances
+        for (int y = 0; y < height; y++) {
+            int count = 0;
+            for (int x = 0; x < width; x++) {
+                int row = columnNearest[x * height + y];
+                if (row == NONE) {
+                    continue;
+                }
+                long dy = row - y;
+                rowCost[x] = dy * dy;
+                while (count > 0 && intersect(sites[count - 1], x) <= bounds[count - 1]) {
+                    count--;
+                }
+                sites[count] = x;
+                bounds[count] = count == 0 ? Double.NEGATIVE_INFINITY : intersect(sites[count - 1], x);
+                count++;
+            }
+            if (count == 0) {
+                for (int x = 0; x < width; x++) {
+                    nearest[x * height + y] = NONE;
+                }
+                continue;
+            }
+            bounds[count] = Double.POSITIVE_INFINITY;
+            int k = 0;
+            for (int x = 0; x < width; x++) {
+                while (bounds[k + 1] < x) {
+                    k++;
+                }
+                int site = sites[k];
+                nearest[x * height + y] = site * height + columnNearest[site * height + y];
+            }
+        }
+    }
+
+    /** Returns the x at which the parabola of column q starts to lie below that of column p. */
+    private double intersect(int p, int q) {
+        return ((rowCost[q] + (long) q * q) - (rowCost[p] + (long) p * p)) / (2.0 * (q - p));
+    }
+}
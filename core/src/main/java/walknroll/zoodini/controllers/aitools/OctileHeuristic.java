@@ -0,0 +1,18 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.Heuristic;
+
+/**
+ * Exact distance between two tiles on an open 8-connected grid, where straight steps
+ * cost 1 and diagonal steps sqrt(2).
+ */
+public class OctileHeuristic<N extends TileNode> implements Heuristic<N> {
+    private static final float DIAGONAL_SAVING = (float) Math.sqrt(2) - 2;
+
+    @Override
+    public float estimate(N node, N endNode) {
+        int dx = Math.abs(endNode.x - node.x);
+        int dy = Math.abs(endNode.y - node.y);
+        return dx + dy + DIAGONAL_SAVING * Math.min(dx, dy);
+    }
+}
@@ -0,0 +1,305 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the last tile path an AI controller asked for so that the pathfinder only runs when
+ * something relevant has changed.
+ *
+ * A cached path is reused as long as the goal tile is the same, the graph has not been
+ * modified since the path was computed (see {@link TileGraph#getVersion()}), and the agent
+ * is still standing on or next to the path. Otherwise the path is re-solved.
+ *
+ * A {@link ClusterPathFinder} may return only the first part of a long path; such a
+ * path is re-solved once the agent reaches its last tile, which continues the agent's
+ * abstract route kept here.
+ *
+ * When a {@link PathRequestScheduler} is used the search runs later, within the
+ * scheduler's budget, and the previous path keeps being returned until the result
+ * arrives. {@link #isPending()} tells a pending search apart from an unreachable goal.
+ *
+ * Agents walk the path with {@link #getNextCorner}, which string-pulls it with a
+ * {@link PathSmoother} once and then moves from corner to corner.
+ */
+public class PathCache {
+    /** How many tiles (in either axis) the agent may stray from the path before it is replanned */
+    private static final int OFF_PATH_TOLERANCE = 1;
+
+    /** The cached path, excluding the tile the search started from */
+    private final List<TileNode> path = new ArrayList<>();
+    /** The tile the cached path starts from */
+    private TileNode origin;
+    /** The goal tile the cached path was computed for */
+    private TileNode goal;
+    /** The graph version the cached path was computed against */
+    private int version = -1;
+    /** Index of the first path tile the agent has not reached yet */
+    private int progress;
+    /** Whether the cache currently holds a path at all */
+    private boolean valid;
+    /** Whether the cached path stops short of the goal */
+    private boolean partial;
+    /** Hierarchical route behind the cached path; null until an HPA* search has run */
+    private ClusterPathFinder.Route route;
+
+    /** Node indices of the cached path's corners, built on first use */
+    private final IntArray corners = new IntArray();
+    /** Whether {@link #corners} belongs to the cached path */
+    private boolean cornersBuilt;
+    /** Index of the corner the agent is walking towards */
+    private int corner;
+    /** Start and end of the leg the agent is walking, in world coordinates */
+    private final Vector2 legStart = new Vector2();
+    private final Vector2 legEnd = new Vector2();
+    private final Vector2 nextCorner = new Vector2();
+
+    /** Search queued with the scheduler, if any */
+    private PathRequestScheduler.Request pending;
+    /** The tiles the pending search was queued for */
+    private TileNode pendingOrigin;
+    private TileNode pendingGoal;
+
+    private long hits;
+    private long misses;
+    private long waits;
+
+    /**
+     * Returns a path from currPosWorld to targetPosWorld, reusing the cached one if possible.
+     * The returned list is owned by the cache and must not be modified.
+     *
+     * @param graph          The graph to search
+     * @param currPosWorld   The starting position in world coordinates
+     * @param targetPosWorld The target position in world coordinates
+     * @param pathFinder     The pathfinder to use on a cache miss
+     * @return A list of nodes from start to target, excluding the start node
+     */
+    public List<TileNode> getPath(TileGraph<TileNode> graph, Vector2 currPosWorld, Vector2 targetPosWorld,
+                                  PathFinder<TileNode> pathFinder) {
+        TileNode start = graph.worldToTile(currPosWorld);
+        TileNode end = graph.worldToTile(targetPosWorld);
+        if (isReusable(graph, currPosWorld, start, end)) {
+            hits++;
+            return path;
+        }
+
+        misses++;
+        cornersBuilt = false;
+        path.clear();
+        if (pathFinder instanceof ClusterPathFinder) {
+            if (route == null) {
+                route = new ClusterPathFinder.Route();
+            }
+            ((ClusterPathFinder) pathFinder).setRoute(route);
+        }
+        path.addAll(graph.getPath(currPosWorld, targetPosWorld, pathFinder));
+        origin = start;
+        goal = end;
+        version = graph.getVersion();
+        progress = 0;
+        valid = true;
+        partial = pathFinder instanceof ClusterPathFinder
+            && ((ClusterPathFinder) pathFinder).isPartial();
+        return path;
+    }
+
+    /**
+     * Returns a path from currPosWorld to targetPosWorld like
+     * {@link #getPath(TileGraph, Vector2, Vector2, PathFinder)}, but queues the search with
+     * the scheduler instead of running it. Until the result arrives the previous path is
+     * returned, which may lead somewhere else or be empty.
+     *
+     * @param graph          The graph to search
+     * @param currPosWorld   The starting position in world coordinates
+     * @param targetPosWorld The target position in world coordinates
+     * @param scheduler      The scheduler to queue searches with
+     * @param priority       How urgently a new path is needed
+     * @return A list of nodes from start to target, excluding the start node
+     */
+    public List<TileNode> getPath(TileGraph<TileNode> graph, Vector2 currPosWorld, Vector2 targetPosWorld,
+                                  PathRequestScheduler scheduler, PathRequestScheduler.Priority priority) {
+        TileNode start = graph.worldToTile(currPosWorld);
+        TileNode end = graph.worldToTile(targetPosWorld);
+        if (pending != null && pending.isDone()) {
+            // A result from before the graph changed is dropped and searched for again below
+            if (pending.version == graph.getVersion()) {
+                install(pending);
+            }
+            pending = null;
+        }
+        if (isReusable(graph, currPosWorld, start, end)) {
+            hits++;
+            return path;
+        }
+        if (pending != null) {
+            if (pendingGoal == end && pending.version == graph.getVersion()) {
+                waits++;
+                return path;
+            }
+            pending.cancel();
+        }
+
+        misses++;
+        // The search gets its own copy of the route, as it may run on another thread
+        ClusterPathFinder.Route searchRoute = null;
+        if (graph.getPathfinderKind() == PathfinderKind.HPA) {
+            searchRoute = route == null ? new ClusterPathFinder.Route() : new ClusterPathFinder.Route(route);
+        }
+        pending = scheduler.submit(currPosWorld, targetPosWorld, priority, searchRoute);
+        pendingOrigin = start;
+        pendingGoal = end;
+        if (pending == null) {
+            // Off the map; behave like a search that found nothing
+            cornersBuilt = false;
+            path.clear();
+            origin = start;
+            goal = end;
+            version = graph.getVersion();
+            progress = 0;
+            valid = true;
+            partial = false;
+        }
+        return path;
+    }
+
+    /** Replaces the cached path with the result of a finished request. */
+    private void install(PathRequestScheduler.Request request) {
+        cornersBuilt = false;
+        path.clear();
+        if (request.pathFound) {
+            for (TileNode node : request.resultPath) {
+                if (node != request.startNode) {
+                    path.add(node);
+                }
+            }
+        }
+        origin = pendingOrigin;
+        goal = pendingGoal;
+        version = request.version;
+        progress = 0;
+        valid = true;
+        partial = request.isPartial();
+        if (request.getRoute() != null) {
+            route = request.getRoute();
+        }
+    }
+
+    /** Returns whether a search has been queued and has not finished yet. */
+    public boolean isPending() {
+        return pending != null && !pending.isDone();
+    }
+
+    /**
+     * Returns the index of the first tile on the cached path that the agent has not reached yet.
+     * Tiles before this index are behind the agent.
+     */
+    public int getProgress() {
+        return progress;
+    }
+
+    /** Forces the next request to be re-solved. */
+    public void invalidate() {
+        valid = false;
+        cornersBuilt = false;
+        path.clear();
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+    }
+
+    /**
+     * Returns the corner of the cached path the agent should walk towards next. The path
+     * is string-pulled the first time this is called after it changes; after that each
+     * call costs at most one clearance check, as the agent moves on to the next corner
+     * once it has reached the current one or can already walk straight to the next.
+     *
+     * @param graph           The graph the path is on
+     * @param position        The agent's position in world coordinates
+     * @param smoother        The smoother for the agent's size
+     * @param arrivalDistance How close the agent must get to a corner to have reached it
+     * @param out             The vector to store the corner's position in
+     * @return out, or null if the cached path is empty
+     */
+    public Vector2 getNextCorner(TileGraph<TileNode> graph, Vector2 position, PathSmoother smoother,
+                                 float arrivalDistance, Vector2 out) {
+        if (path.isEmpty()) {
+            return null;
+        }
+        if (!cornersBuilt) {
+            corners.clear();
+            graph.tileToWorld(origin, legStart);
+            smoother.smooth(origin, path, corners);
+            corner = 0;
+            graph.tileToWorld(graph.getNodeByIndex(corners.get(0)), legEnd);
+            cornersBuilt = true;
+        }
+        if (corner < corners.size - 1) {
+            graph.tileToWorld(graph.getNodeByIndex(corners.get(corner + 1)), nextCorner);
+            if (position.dst(legEnd) < arrivalDistance || smoother.isClear(position, nextCorner)) {
+                corner++;
+                legStart.set(legEnd);
+                legEnd.set(nextCorner);
+            }
+        }
+        return out.set(legEnd);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Returns how often a path was requested while the search for it was still queued. */
+    public long getWaits() {
+        return waits;
+    }
+
+    /**
+     * Checks whether the cached path can still be used and, if so, advances the progress
+     * marker to the path tile the agent is currently at.
+     */
+    private boolean isReusable(TileGraph<TileNode> graph, Vector2 position, TileNode start, TileNode end) {
+        if (!valid || start == null || end != goal || version != graph.getVersion()) {
+            return false;
+        }
+        if (path.isEmpty()) {
+            // Unreachable goal; only worth searching again if we have moved
+            return start == origin;
+        }
+        int from = Math.max(0, progress - 1);
+        for (int i = from; i < path.size(); i++) {
+            if (path.get(i) == start) {
+                if (partial && i == path.size() - 1) {
+                    // Reached the end of a partial path; fetch the next part
+                    return false;
+                }
+                progress = Math.min(i + 1, path.size() - 1);
+                return true;
+            }
+        }
+        for (int i = from; i < path.size(); i++) {
+            if (isNear(path.get(i), start)) {
+                progress = i;
+                return true;
+            }
+        }
+        // Walking straight between corners can stray further from the tiles than the tolerance
+        if (cornersBuilt && Intersector.distanceSegmentPoint(legStart, legEnd, position)
+                <= (float) OFF_PATH_TOLERANCE / graph.getDensity()) {
+            return true;
+        }
+        return progress == 0 && isNear(origin, start);
+    }
+
+    private boolean isNear(TileNode a, TileNode b) {
+        return Math.abs(a.x - b.x) <= OFF_PATH_TOLERANCE && Math.abs(a.y - b.y) <= OFF_PATH_TOLERANCE;
+    }
+}
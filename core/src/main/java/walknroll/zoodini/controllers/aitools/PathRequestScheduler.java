@@ -0,0 +1,328 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.msg.MessageDispatcher;
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import com.badlogic.gdx.ai.pfa.PathFinderQueue;
+import com.badlogic.gdx.ai.pfa.PathFinderRequest;
+import com.badlogic.gdx.ai.sched.Schedulable;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Central queue for path requests, served within a fixed time budget every frame.
+ *
+ * Instead of searching on the spot, AI controllers submit requests here (usually through
+ * {@link PathCache}) and keep following their previous path until the result arrives.
+ * There is one gdx-ai {@link PathFinderQueue} per {@link Priority}, each with its own
+ * pathfinder, and higher priorities are always served first. Searches that support it
+ * (plain A*) are paused when the budget runs out and resumed on the next frame; the grid
+ * pathfinders are fast enough that they always run to completion.
+ *
+ * Requests are sent to the queues through a private {@link MessageDispatcher}, so they do
+ * not interfere with anything registered on the global MessageManager.
+ *
+ * With worker threads the searches run in the background instead (see
+ * {@link PathWorkerPool}), and {@link #update()} only hands finished results back. The
+ * time budget is then unused.
+ */
+public class PathRequestScheduler implements Schedulable {
+    /** Time budget per frame used unless another one is set */
+    public static final long DEFAULT_BUDGET_MICROS = 500;
+
+    private static final int MSG_PATH_REQUEST = 1;
+    private static final int MSG_PATH_RESPONSE = 2;
+
+    /** How urgently a path is needed. Requests of a higher priority are served first. */
+    public enum Priority {
+        /** Guards chasing or closing in on an avatar */
+        HIGH,
+        /** Guards investigating a camera alarm or a distraction, and the follower avatar */
+        NORMAL,
+        /** Guards returning to or walking their patrol */
+        LOW
+    }
+
+    private final TileGraph<TileNode> graph;
+    private final PathFinder<TileNode>[] finders;
+    private final PathFinderQueue<TileNode>[] queues;
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+    /** Background searches, or null if searches run on the game thread */
+    private final PathWorkerPool workers;
+    private long budgetMicros;
+
+    /** Requests waiting or being searched */
+    private int outstanding;
+    /** Statistics, for debug output */
+    private long served;
+    private long lastRunNanos;
+    private long peakRunNanos;
+
+    /**
+     * Creates a scheduler that searches on the game thread.
+     *
+     * @param graph        The graph to search
+     * @param budgetMicros Time that may be spent searching each frame, in microseconds
+     */
+    public PathRequestScheduler(TileGraph<TileNode> graph, long budgetMicros) {
+        this(graph, budgetMicros, 0);
+    }
+
+    /**
+     * @param graph         The graph to search
+     * @param budgetMicros  Time that may be spent searching each frame, in microseconds
+     * @param workerThreads Number of background threads to search on; with 0 the searches
+     *                      run on the game thread within the budget
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PathRequestScheduler(TileGraph<TileNode> graph, long budgetMicros, int workerThreads) {
+        this.graph = graph;
+        this.budgetMicros = budgetMicros;
+        if (workerThreads > 0) {
+            this.workers = new PathWorkerPool(graph, workerThreads);
+            this.finders = null;
+            this.queues = null;
+            return;
+        }
+        this.workers = null;
+        int levels = Priority.values().length;
+        this.finders = new PathFinder[levels];
+        this.queues = new PathFinderQueue[levels];
+        for (int i = 0; i < levels; i++) {
+            // Each queue may leave a search half done between frames, so none can share a finder
+            finders[i] = graph.createPathFinder();
+            queues[i] = new PathFinderQueue<>(finders[i]);
+        }
+    }
+
+    /**
+     * Queues a search between two world positions. Positions inside walls are moved to the
+     * nearest open tile, as in {@link TileGraph#getPath}.
+     *
+     * @param from     The start position in world coordinates
+     * @param to       The target position in world coordinates
+     * @param priority How urgently the path is needed
+     * @return The request, which is filled in once it has been served, or null if either
+     *         position is off the map
+     */
+    public Request submit(Vector2 from, Vector2 to, Priority priority) {
+        return submit(from, to, priority, null);
+    }
+
+    /**
+     * Queues a search like {@link #submit(Vector2, Vector2, Priority)} that continues the
+     * given hierarchical route, see {@link ClusterPathFinder#setRoute}. The search may
+     * run on another thread, so the route belongs to the request from now on.
+     *
+     * @param from     The start position in world coordinates
+     * @param to       The target position in world coordinates
+     * @param priority How urgently the path is needed
+     * @param route    The route to continue and store the new one in, or null
+     * @return The request, or null if either position is off the map
+     */
+    public Request submit(Vector2 from, Vector2 to, Priority priority, ClusterPathFinder.Route route) {
+        TileNode start = graph.worldToTile(from);
+        TileNode end = graph.worldToTile(to);
+        if (start == null || end == null) {
+            return null;
+        }
+        if (start.isObstacle) {
+            start = graph.findNearestNonObstacleNode(from);
+        }
+        if (end.isObstacle) {
+            end = graph.findNearestNonObstacleNode(to);
+        }
+        if (start == null || end == null) {
+            return null;
+        }
+
+        if (workers != null) {
+            Request request = new Request(start, end, graph.getVersion(), null, route);
+            outstanding++;
+            workers.submit(request, priority);
+            return request;
+        }
+        Request request = new Request(start, end, graph.getVersion(), finders[priority.ordinal()], route);
+        request.dispatcher = dispatcher;
+        request.responseMessageCode = MSG_PATH_RESPONSE;
+        outstanding++;
+        dispatcher.dispatchMessage(request, queues[priority.ordinal()], MSG_PATH_REQUEST, request);
+        return request;
+    }
+
+    /** Serves requests for this frame's budget. */
+    public void update() {
+        run(budgetMicros * 1000);
+    }
+
+    /**
+     * Serves queued requests, highest priority first, until they are all done or the
+     * given time is used up. With worker threads this only hands back finished results.
+     *
+     * @param timeToRun The time available, in nanoseconds
+     */
+    @Override
+    public void run(long timeToRun) {
+        if (outstanding == 0) {
+            lastRunNanos = 0;
+            return;
+        }
+        long start = TimeUtils.nanoTime();
+        if (workers != null) {
+            workers.poll();
+            lastRunNanos = TimeUtils.nanoTime() - start;
+            peakRunNanos = Math.max(peakRunNanos, lastRunNanos);
+            return;
+        }
+        for (PathFinderQueue<TileNode> queue : queues) {
+            long remaining = timeToRun - (TimeUtils.nanoTime() - start);
+            if (remaining <= PathFinderQueue.TIME_TOLERANCE) {
+                break;
+            }
+            queue.run(remaining);
+        }
+        lastRunNanos = TimeUtils.nanoTime() - start;
+        peakRunNanos = Math.max(peakRunNanos, lastRunNanos);
+    }
+
+    /** Returns whether searches run on background threads. */
+    public boolean isAsync() {
+        return workers != null;
+    }
+
+    /**
+     * Returns how many background results were thrown away because the graph changed
+     * while they were being searched. Always 0 without worker threads.
+     */
+    public long getDiscarded() {
+        return workers == null ? 0 : workers.getDiscarded();
+    }
+
+    /** Stops the worker threads, if any. Requests still queued are never served. */
+    public void dispose() {
+        if (workers != null) {
+            workers.dispose();
+        }
+    }
+
+    public long getBudgetMicros() {
+        return budgetMicros;
+    }
+
+    public void setBudgetMicros(long budgetMicros) {
+        this.budgetMicros = budgetMicros;
+    }
+
+    /** Returns the number of requests that have not been served yet. */
+    public int getOutstanding() {
+        return outstanding;
+    }
+
+    /** Returns the number of requests served so far. */
+    public long getServed() {
+        return served;
+    }
+
+    /** Returns the time spent in the last call to {@link #run(long)}, in nanoseconds. */
+    public long getLastRunNanos() {
+        return lastRunNanos;
+    }
+
+    /** Returns the longest time spent in a single call to {@link #run(long)}, in nanoseconds. */
+    public long getPeakRunNanos() {
+        return peakRunNanos;
+    }
+
+    /**
+     * A queued path search. The request doubles as the client the queue replies to, so
+     * the result can simply be polled with {@link #isDone()}.
+     */
+    public class Request extends PathFinderRequest<TileNode> implements Telegraph {
+        /** Graph version when the request was made */
+        public final int version;
+        /** The pathfinder of the queue this request is in, or null if it runs on a worker */
+        private final PathFinder<TileNode> finder;
+        /** Hierarchical route the search continues, or null */
+        private final ClusterPathFinder.Route route;
+        private boolean done;
+        /** Set on the game thread, read by workers */
+        private volatile boolean cancelled;
+        private boolean partial;
+
+        Request(TileNode start, TileNode end, int version, PathFinder<TileNode> finder,
+                ClusterPathFinder.Route route) {
+            super(start, end, graph.getHeuristic(), new DefaultGraphPath<>());
+            this.version = version;
+            this.finder = finder;
+            this.route = route;
+        }
+
+        /** Returns whether the search has finished; check {@link #pathFound} for the outcome. */
+        public boolean isDone() {
+            return done;
+        }
+
+        /** Returns whether the path stops short of the goal, see {@link ClusterPathFinder#isPartial()}. */
+        public boolean isPartial() {
+            return partial;
+        }
+
+        /** Returns the route the search continued and stored its own in, or null. */
+        public ClusterPathFinder.Route getRoute() {
+            return route;
+        }
+
+        /**
+         * Gives up on this request. It stays queued, but is skipped without searching
+         * when its turn comes.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean search(PathFinder<TileNode> pathFinder, long timeToRun) {
+            if (cancelled) {
+                pathFound = false;
+                return true;
+            }
+            bindRoute(pathFinder);
+            return super.search(pathFinder, timeToRun);
+        }
+
+        @Override
+        public boolean handleMessage(Telegram msg) {
+            partial = pathFound && finder instanceof ClusterPathFinder && ((ClusterPathFinder) finder).isPartial();
+            finish();
+            return true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Runs the whole search at once; used by the worker threads. */
+        void searchWith(PathFinder<TileNode> pathFinder) {
+            resultPath.clear();
+            bindRoute(pathFinder);
+            pathFound = pathFinder.searchNodePath(startNode, endNode, heuristic, resultPath);
+            partial = pathFound && pathFinder instanceof ClusterPathFinder && ((ClusterPathFinder) pathFinder).isPartial();
+        }
+
+        private void bindRoute(PathFinder<TileNode> pathFinder) {
+            // The queue's finder is shared, so a request without a route must unbind the last one
+            if (pathFinder instanceof ClusterPathFinder) {
+                ((ClusterPathFinder) pathFinder).setRoute(route);
+            }
+        }
+
+        /** Marks the request as served. Must be called on the game thread. */
+        void finish() {
+            done = true;
+            outstanding--;
+            served++;
+        }
+    }
+}
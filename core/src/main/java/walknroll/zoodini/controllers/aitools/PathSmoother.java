@@ -1,9 +1,76 @@
 package walknroll.zoodini.controllers.aitools;
 
 import com.badlogic.gdx.math.Vector2;
-import java.util.ArrayList;
+import com.badlogic.gdx.utils.IntArray;
 import java.util.List;
 
+/**
+ * Reduces tile paths to the few tiles where an agent actually has to turn.
+ *
+ * A tile path is string-pulled once, when it is planned: starting from the agent, the
+ * furthest path tile that can be walked to in a straight line becomes the next corner,
+ * and the search continues from there. Agents then only walk from corner to corner
+ * instead of re-checking line of sight along the whole path every frame.
+ *
+ * "In a straight line" takes the agent's size into account: the strip swept by a circle
+ * of the agent's radius must not touch an obstacle tile (see {@link GridRaycast}). Since
+ * corners are always tile centres, the answers are shared through the graph's
+ * {@link TileVisibility} cache for the agent's radius.
+ */
 public class PathSmoother {
+    private final TileGraph<TileNode> graph;
+    private final GridGraph grid;
+    /** Agent radius in tiles */
+    private final float radius;
+    private final TileVisibility visibility;
 
+    /**
+     * @param graph  The graph the paths are on
+     * @param radius Radius of the agents walking the paths, in world units
+     */
+    public PathSmoother(TileGraph<TileNode> graph, float radius) {
+        this.graph = graph;
+        this.grid = graph.getSearchGraph();
+        this.radius = radius * graph.getDensity();
+        this.visibility = graph.getVisibility(this.radius);
+    }
+
+    /**
+     * String-pulls a tile path and appends the node indices of its corners to out. The
+     * last tile of the path is always the last corner.
+     *
+     * @param start The tile the path is walked from
+     * @param path  The tile path, excluding the start tile
+     * @param out   The array to append the corners to
+     */
+    public void smooth(TileNode start, List<TileNode> path, IntArray out) {
+        int anchor = start.getIndex();
+        int i = 0;
+        while (i < path.size()) {
+            int furthest = i;
+            for (int j = i + 1; j < path.size(); j++) {
+                if (visibility.isVisible(anchor, path.get(j).getIndex())) {
+                    furthest = j;
+                } else {
+                    break;
+                }
+            }
+            anchor = path.get(furthest).getIndex();
+            out.add(anchor);
+            i = furthest + 1;
+        }
+    }
+
+    /**
+     * Returns whether an agent can walk in a straight line between two positions without
+     * its body overlapping an obstacle tile.
+     *
+     * @param from The start position in world coordinates
+     * @param to   The end position in world coordinates
+     */
+    public boolean isClear(Vector2 from, Vector2 to) {
+        int density = graph.getDensity();
+        return GridRaycast.isClear(grid, graph.getClearance(), from.x * density, from.y * density,
+            to.x * density, to.y * density, radius, true);
+    }
 }
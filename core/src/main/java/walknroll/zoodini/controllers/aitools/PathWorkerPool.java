@@ -0,0 +1,169 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background threads that run the searches of a {@link PathRequestScheduler}.
+ *
+ * Workers never look at the live {@link GridGraph}, which the game thread changes when a
+ * door unlocks. Instead the game thread copies the grid whenever its version has changed
+ * and hands that snapshot to every search it submits. Snapshots are never modified, so
+ * several workers can read one at once; each worker searches its own private copy of the
+ * latest snapshot it has seen with its own pathfinder, both rebuilt only when a newer
+ * snapshot arrives. For HPA* the game thread also copies the level's clusters, which it
+ * keeps up to date door by door, alongside each snapshot; the workers only read them, so
+ * they all share that one copy instead of each clustering the grid again.
+ *
+ * Finished requests come back through a lock-free queue and are handed to their owners
+ * by {@link #poll()} on the game thread. A result computed against an older snapshot
+ * than the current graph is discarded there, so a path never leads through a door that
+ * has since closed or around one that has opened.
+ */
+class PathWorkerPool {
+    private final TileGraph<TileNode> graph;
+    private final PathfinderKind kind;
+    private final ThreadPoolExecutor executor;
+    /** Requests the workers have finished, waiting to be handed back on the game thread */
+    private final ConcurrentLinkedQueue<PathRequestScheduler.Request> finished = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    /** Copy of the grid for the current graph version; only touched on the game thread */
+    private GridGraph snapshot;
+    /** Copy of the level's clusters over the snapshot, for HPA*; otherwise null */
+    private ClusterGraph snapshotClusters;
+    /** Submission counter, keeps requests of equal priority in order */
+    private long sequence;
+
+    private long snapshots;
+    private long discarded;
+
+    /**
+     * @param graph   The graph to search
+     * @param threads Number of worker threads
+     */
+    PathWorkerPool(TileGraph<TileNode> graph, int threads) {
+        this.graph = graph;
+        this.kind = graph.getPathfinderKind();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "path-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Queues a request against a snapshot of the graph as it is now.
+     *
+     * @param request  The request to search
+     * @param priority How urgently the path is needed
+     */
+    void submit(PathRequestScheduler.Request request, PathRequestScheduler.Priority priority) {
+        if (snapshot == null || snapshot.getVersion() != graph.getVersion()) {
+            snapshot = new GridGraph(graph.getSearchGraph());
+            if (kind == PathfinderKind.HPA) {
+                snapshotClusters = new ClusterGraph(snapshot, graph.getClusterGraph());
+            }
+            snapshots++;
+        }
+        executor.execute(new Task(request, priority.ordinal(), sequence++, snapshot, snapshotClusters));
+    }
+
+    /**
+     * Hands every request finished since the last call back to its owner. Must be called
+     * on the game thread.
+     *
+     * @return The number of requests handed back
+     */
+    int poll() {
+        int count = 0;
+        PathRequestScheduler.Request request;
+        while ((request = finished.poll()) != null) {
+            if (request.version != graph.getVersion()) {
+                // Searched before a door changed; the owner will ask again
+                request.pathFound = false;
+                request.resultPath.clear();
+                discarded++;
+            }
+            request.finish();
+            count++;
+        }
+        return count;
+    }
+
+    /** Returns how many snapshots of the graph have been taken. */
+    long getSnapshots() {
+        return snapshots;
+    }
+
+    /** Returns how many results were thrown away because the graph had changed. */
+    long getDiscarded() {
+        return discarded;
+    }
+
+    /** Stops the worker threads. Queued searches are dropped. */
+    void dispose() {
+        executor.shutdownNow();
+        finished.clear();
+    }
+
+    /** A queued search, ordered by priority and then by submission */
+    private final class Task implements Runnable, Comparable<Task> {
+        private final PathRequestScheduler.Request request;
+        private final int priority;
+        private final long sequence;
+        private final GridGraph snapshot;
+        private final ClusterGraph clusters;
+
+        Task(PathRequestScheduler.Request request, int priority, long sequence, GridGraph snapshot,
+             ClusterGraph clusters) {
+            this.request = request;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.snapshot = snapshot;
+            this.clusters = clusters;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!request.isCancelled()) {
+                    request.searchWith(workers.get().finderFor(snapshot, clusters));
+                }
+            } finally {
+                // Even a failed search must be handed back, or its owner would wait forever
+                finished.add(request);
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /** Per-thread search state */
+    private final class Worker {
+        /** The snapshot the grid below was copied from */
+        private GridGraph source;
+        private GridGraph grid;
+        private PathFinder<TileNode> finder;
+
+        PathFinder<TileNode> finderFor(GridGraph snapshot, ClusterGraph clusters) {
+            if (source != snapshot) {
+                source = snapshot;
+                grid = new GridGraph(snapshot);
+                finder = clusters != null ? new ClusterPathFinder(clusters, grid, true)
+                    : kind.createPathFinder(grid);
+            }
+            return finder;
+        }
+    }
+}
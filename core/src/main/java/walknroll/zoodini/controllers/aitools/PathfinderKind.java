@@ -0,0 +1,67 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+
+/**
+ * The pathfinding algorithms the AI controllers can use. A level can pick one with a
+ * "pathfinder" property on its Settings object; see {@link TileGraph#createPathFinder()}.
+ */
+public enum PathfinderKind {
+    /** Plain A* over every tile */
+    ASTAR,
+    /** Jump Point Search, scanning for jump points at runtime */
+    JPS,
+    /** Jump Point Search with precomputed jump distances */
+    JPS_PLUS,
+    /** Hierarchical A* over clusters of tiles, for large maps */
+    HPA;
+
+    /**
+     * Creates a pathfinder of this kind over the given grid. For {@link #HPA} this also
+     * builds a new {@link ClusterGraph}; use {@link TileGraph#createPathFinder()} to share
+     * the level's clusters instead.
+     *
+     * @param grid The grid to search
+     */
+    public PathFinder<TileNode> createPathFinder(GridGraph grid) {
+        switch (this) {
+            case JPS:
+                return new JumpPointPathFinder(grid);
+            case JPS_PLUS:
+                return new JumpPointPlusPathFinder(grid);
+            case HPA:
+                return new ClusterPathFinder(new ClusterGraph(grid, ClusterGraph.DEFAULT_CLUSTER_SIZE), true);
+            case ASTAR:
+            default:
+                return new IndexedAStarPathFinder<>(grid);
+        }
+    }
+
+    /**
+     * Parses a Tiled property value such as "astar", "jps", "jps+" or "hpa".
+     *
+     * @param value    The property value, may be null
+     * @param fallback The kind to use if the value is missing or unknown
+     */
+    public static PathfinderKind fromString(String value, PathfinderKind fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        switch (value.trim().toUpperCase()) {
+            case "ASTAR":
+            case "A*":
+                return ASTAR;
+            case "JPS":
+                return JPS;
+            case "JPS+":
+            case "JPS_PLUS":
+                return JPS_PLUS;
+            case "HPA":
+            case "HPA*":
+                return HPA;
+            default:
+                return fallback;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package walknroll.zoodini.controllers.aitools;
+
+import com.badlogic.gdx.ai.pfa.PathFinder;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+import java.util.List;
+
+/**
+ * Precomputed patrol routes for a single guard.
+ *
+ * Patrol waypoints never change during a level, so the tile path between every pair of
+ * consecutive waypoints is solved once at level load and smoothed down to its corners.
+ * Segment i leads from waypoint i to waypoint (i + 1) % n, so the last segment closes
+ * the loop back to the first waypoint. The corners of all segments are stored as node
+ * indices in one flat array, with {@code offsets[i]} marking where segment i begins.
+ *
+ * A guard pulled off its patrol gets back into the loop through the re-entry field of a
+ * waypoint: a {@link FlowField} holding the walking distance from every tile to that
+ * waypoint. The waypoint to rejoin at is picked by walking distance, not straight-line,
+ * and the way back is read from the field instead of being searched for. The fields are
+ * built here and only rebuilt once the graph has changed, e.g. when a door unlocks.
+ */
+public class PatrolRouteTable {
+    /** Waypoints of the patrol in world coordinates */
+    private final Vector2[] waypoints;
+    /** Node indices of every segment's corners, back to back */
+    private final int[] corners;
+    /** Start of each segment in {@link #corners}; has one extra entry marking the end */
+    private final int[] offsets;
+    /** The graph the node indices refer to */
+    private final TileGraph<TileNode> graph;
+    /** Walking distances from every tile to each waypoint, for getting back into the loop */
+    private final FlowField[] entries;
+
+    /**
+     * Builds the route table for the given waypoints.
+     *
+     * @param graph      The graph of the level
+     * @param waypoints  The patrol waypoints in world coordinates
+     * @param pathFinder The pathfinder used to solve each segment
+     * @param smoother   Reduces each segment to its corners
+     */
+    public PatrolRouteTable(TileGraph<TileNode> graph, Vector2[] waypoints,
+                            PathFinder<TileNode> pathFinder, PathSmoother smoother) {
+        this.graph = graph;
+        this.waypoints = waypoints;
+        int n = waypoints.length <= 1 ? 0 : waypoints.length;
+        this.offsets = new int[n + 1];
+
+        IntArray flat = new IntArray();
+        // Hierarchical searches hand out long paths in parts; each part continues this route
+        ClusterPathFinder clusterFinder = pathFinder instanceof ClusterPathFinder
+            ? (ClusterPathFinder) pathFinder : null;
+        ClusterPathFinder.Route route = new ClusterPathFinder.Route();
+        for (int i = 0; i < n; i++) {
+            offsets[i] = flat.size;
+            Vector2 from = waypoints[i];
+            Vector2 to = waypoints[(i + 1) % n];
+            if (clusterFinder != null) {
+                clusterFinder.setRoute(route);
+            }
+            List<TileNode> path = graph.getPath(from, to, pathFinder);
+            while (!path.isEmpty() && clusterFinder != null && clusterFinder.isPartial()) {
+                Vector2 partEnd = graph.tileToWorld(path.get(path.size() - 1));
+                clusterFinder.setRoute(route);
+                List<TileNode> rest = graph.getPath(partEnd, to, pathFinder);
+                if (rest.isEmpty()) {
+                    break;
+                }
+                path.addAll(rest);
+            }
+            smoother.smooth(graph.worldToTile(from), path, flat);
+        }
+        offsets[n] = flat.size;
+        this.corners = flat.toArray();
+
+        this.entries = new FlowField[waypoints.length];
+        for (int i = 0; i < waypoints.length; i++) {
+            entries[i] = new FlowField(graph);
+            entries[i].update(waypoints[i]);
+        }
+    }
+
+    /** Returns the number of waypoints (and therefore segments) in this patrol. */
+    public int getWaypointCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the index of the segment that ends at the given waypoint, or -1 if the
+     * patrol has no segments (a guard standing at a single post).
+     */
+    public int getSegmentTo(int waypointIndex) {
+        int n = getWaypointCount();
+        if (n == 0) {
+            return -1;
+        }
+        return (waypointIndex - 1 + n) % n;
+    }
+
+    /**
+     * Returns the number of corners in a segment. A segment with no corners could not be
+     * solved at load time (e.g. the waypoint is behind a locked door).
+     */
+    public int getCornerCount(int segment) {
+        if (segment < 0) {
+            return 0;
+        }
+        return offsets[segment + 1] - offsets[segment];
+    }
+
+    /**
+     * Writes the world position of a corner into out.
+     *
+     * @param segment The segment index
+     * @param corner  The corner index within the segment
+     * @param out     The vector to store the position in
+     * @return out, for chaining
+     */
+    public Vector2 getCorner(int segment, int corner, Vector2 out) {
+        TileNode node = graph.getNodeByIndex(corners[offsets[segment] + corner]);
+        return graph.tileToWorld(node, out);
+    }
+
+    /**
+     * Returns the re-entry field leading to a waypoint, rebuilt first if the graph has
+     * changed since it was last used.
+     *
+     * @param waypointIndex The waypoint to get back to
+     */
+    public FlowField getEntryField(int waypointIndex) {
+        FlowField field = entries[waypointIndex];
+        field.update(waypoints[waypointIndex]);
+        return field;
+    }
+
+    /**
+     * Returns the index of the waypoint with the shortest walk from the given position.
+     * Falls back to the nearest one in a straight line if none can be walked to.
+     *
+     * @param position A position in world coordinates
+     */
+    public int getNearestWaypoint(Vector2 position) {
+        TileNode tile = graph.worldToTile(position);
+        if (tile != null && tile.isObstacle) {
+            tile = graph.findNearestNonObstacleNode(position);
+        }
+        int nearest = -1;
+        int minSteps = FlowField.UNREACHABLE;
+        for (int i = 0; i < waypoints.length; i++) {
+            int steps = getEntryField(i).getDistance(tile);
+            if (steps < minSteps) {
+                minSteps = steps;
+                nearest = i;
+            }
+        }
+        if (nearest >= 0) {
+            return nearest;
+        }
+
+        nearest = 0;
+        float minDistance = Float.MAX_VALUE;
+        for (int i = 0; i < waypoints.length; i++) {
+            float distance = position.dst2(waypoints[i]);
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+}
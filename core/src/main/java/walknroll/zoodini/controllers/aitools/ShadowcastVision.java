@@ -0,0 +1,240 @@
+package walknroll.zoodini.controllers.aitools;
+
+/**
+ * Finds how far a fan of sight rays reaches through a {@link SightGrid}, with recursive
+ * shadowcasting instead of one raycast per ray.
+ *
+ * The area around the origin is split into eight octants. Each octant is scanned one
+ * column of tiles at a time, moving away from the origin, while keeping the range of
+ * slopes that is still lit; an opaque tile casts a shadow over exactly the slopes it
+ * covers, and the lit range splits around it. Only the slopes of rays in the fan are
+ * scanned, so a narrow cone visits the tiles inside it and the walls on its edge.
+ *
+ * Every opaque tile the scan reaches is the first wall for some of the rays over it.
+ * Such a ray ends where it enters the tile, unless another lit wall is closer, so the
+ * rays end at the same points as rays walked through the grid one by one. Slopes are
+ * measured from the exact origin, not the centre of its tile. The origin's own tile
+ * never blocks.
+ *
+ * Coordinates are in world units and are converted to tiles with the grid density. An
+ * instance keeps scratch state between calls, so each thread needs its own.
+ */
+public final class ShadowcastVision {
+    private final SightGrid grid;
+    private final int density;
+
+    /** Ray indices of each octant, sorted by slope, and the matching slopes */
+    private final int[][] octantRays = new int[8][];
+    private final float[][] octantSlopes = new float[8][];
+    private final int[] octantCounts = new int[8];
+    /** Distance along each ray to the first wall, in tiles, and 1 / cos of its angle to the primary axis */
+    private float[] reach = new float[0];
+    private float[] stretch = new float[0];
+
+    /** The octant being scanned: its primary axis, the direction of both axes and the ray slopes in it */
+    private boolean primaryX;
+    private int primarySign;
+    private int secondarySign;
+    private int[] rays;
+    private float[] slopes;
+    private int rayCount;
+    /** Tile containing the origin, and the origin's distances to that tile's far edges in the octant */
+    private int originX;
+    private int originY;
+    private float primaryEdge;
+    private float secondaryEdge;
+    /** Length of the rays, in tiles */
+    private float radius;
+
+    /**
+     * @param grid    The tiles that block sight
+     * @param density Tiles per world unit along each axis
+     */
+    public ShadowcastVision(SightGrid grid, int density) {
+        this.grid = grid;
+        this.density = density;
+    }
+
+    /**
+     * Finds how far each ray of a fan reaches before it hits an opaque tile.
+     *
+     * @param x         Origin x, in world units
+     * @param y         Origin y, in world units
+     * @param length    Length of the rays, in world units
+     * @param dirX      X component of each ray's unit direction
+     * @param dirY      Y component of each ray's unit direction
+     * @param count     Number of rays
+     * @param distances Filled with the distance along each ray to the first opaque tile,
+     *                  or the length if there is none, in world units
+     */
+    public void cast(float x, float y, float length, float[] dirX, float[] dirY, int count, float[] distances) {
+        float ox = x * density;
+        float oy = y * density;
+        radius = length * density;
+        originX = (int) Math.floor(ox);
+        originY = (int) Math.floor(oy);
+        sortRays(dirX, dirY, count);
+
+        for (int octant = 0; octant < 8; octant++) {
+            rayCount = octantCounts[octant];
+            if (rayCount == 0) {
+                continue;
+            }
+            rays = octantRays[octant];
+            slopes = octantSlopes[octant];
+            primaryX = octant < 4;
+            primarySign = (octant & 2) == 0 ? 1 : -1;
+            secondarySign = (octant & 1) == 0 ? 1 : -1;
+            float primary = primaryX ? ox : oy;
+            float secondary = primaryX ? oy : ox;
+            int primaryTile = primaryX ? originX : originY;
+            int secondaryTile = primaryX ? originY : originX;
+            primaryEdge = primarySign > 0 ? primaryTile + 1 - primary : primary - primaryTile;
+            secondaryEdge = secondarySign > 0 ? secondaryTile + 1 - secondary : secondary - secondaryTile;
+            scan(0, slopes[0], slopes[rayCount - 1]);
+        }
+
+        for (int i = 0; i < count; i++) {
+            distances[i] = reach[i] / density;
+        }
+    }
+
+    /** Files every ray under its octant, sorted by slope, and resets its reach. */
+    private void sortRays(float[] dirX, float[] dirY, int count) {
+        if (reach.length < count) {
+            reach = new float[count];
+            stretch = new float[count];
+        }
+        for (int octant = 0; octant < 8; octant++) {
+            if (octantRays[octant] == null || octantRays[octant].length < count) {
+                octantRays[octant] = new int[count];
+                octantSlopes[octant] = new float[count];
+            }
+            octantCounts[octant] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            float dx = dirX[i];
+            float dy = dirY[i];
+            float ax = Math.abs(dx);
+            float ay = Math.abs(dy);
+            int octant;
+            float slope;
+            if (ax >= ay) {
+                octant = (dx >= 0 ? 0 : 2) + (dy >= 0 ? 0 : 1);
+                slope = ay / ax;
+                stretch[i] = 1 / ax;
+            } else {
+                octant = 4 + (dy >= 0 ? 0 : 2) + (dx >= 0 ? 0 : 1);
+                slope = ax / ay;
+                stretch[i] = 1 / ay;
+            }
+            reach[i] = radius;
+            // Insertion sort; the rays of a fan already come in order, or in reverse
+            int[] indices = octantRays[octant];
+            float[] values = octantSlopes[octant];
+            int j = octantCounts[octant]++;
+            while (j > 0 && values[j - 1] > slope) {
+                indices[j] = indices[j - 1];
+                values[j] = values[j - 1];
+                j--;
+            }
+            indices[j] = i;
+            values[j] = slope;
+        }
+    }
+
+    /**
+     * Scans the current octant from the given column outwards, over the lit slopes
+     * between lo and hi.
+     *
+     * @param column Distance of the first column from the origin's column, in tiles
+     * @param lo     Lowest lit slope
+     * @param hi     Highest lit slope
+     */
+    private void scan(int column, float lo, float hi) {
+        for (int j = column; ; j++) {
+            // Distances along the primary axis to the near and far sides of the column
+            float near = Math.max(j - 1 + primaryEdge, 0);
+            float far = j + primaryEdge;
+            if (near >= radius) {
+                return;
+            }
+            if (far <= 0) {
+                // The origin lies on the column's far side
+                continue;
+            }
+            int start = (int) Math.floor(lo * near - secondaryEdge) + 1;
+            int end = (int) Math.floor(hi * far - secondaryEdge) + 1;
+            boolean blocked = false;
+            for (int k = start; k <= end; k++) {
+                if ((j == 0 && k == 0) || !isOpaque(j, k)) {
+                    blocked = false;
+                    continue;
+                }
+                // Slopes the tile covers, seen from the origin
+                float low = k - 1 + secondaryEdge;
+                float high = k + secondaryEdge;
+                float minSlope = low >= 0 ? low / far : (near > 0 ? low / near : Float.NEGATIVE_INFINITY);
+                float maxSlope = high >= 0 ? (near > 0 ? high / near : Float.POSITIVE_INFINITY) : high / far;
+                hit(near, low, Math.max(lo, minSlope), Math.min(hi, maxSlope));
+                if (!blocked && minSlope > lo && hasRays(lo, minSlope)) {
+                    // The lit run before this wall goes on past it
+                    scan(j + 1, lo, minSlope);
+                }
+                blocked = true;
+                lo = Math.max(lo, maxSlope);
+            }
+            if (blocked || lo > hi || !hasRays(lo, hi)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ends the rays with slopes between from and to at an opaque tile, unless they have
+     * already ended closer.
+     *
+     * @param near Distance along the primary axis to the tile's near side
+     * @param low  Distance along the secondary axis to the tile's low side
+     */
+    private void hit(float near, float low, float from, float to) {
+        for (int i = firstRay(from); i < rayCount && slopes[i] <= to; i++) {
+            float slope = slopes[i];
+            // The ray enters the tile through its near side, or through its low side
+            float entry = low > 0 ? Math.max(near, low / slope) : near;
+            int ray = rays[i];
+            float distance = entry * stretch[ray];
+            if (distance < reach[ray]) {
+                reach[ray] = distance;
+            }
+        }
+    }
+
+    /** Returns whether some ray of the current octant has a slope between lo and hi. */
+    private boolean hasRays(float lo, float hi) {
+        int i = firstRay(lo);
+        return i < rayCount && slopes[i] <= hi;
+    }
+
+    /** Returns the position of the first ray of the current octant with a slope of at least the given one. */
+    private int firstRay(float slope) {
+        int lo = 0;
+        int hi = rayCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (slopes[mid] < slope) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private boolean isOpaque(int column, int row) {
+        if (primaryX) {
+            return grid.isOpaque(originX + primarySign * column, originY + secondarySign * row);
+        }
+        return grid.isOpaque(originX + secondarySign * row, originY + primarySign * column);
+    }
+}
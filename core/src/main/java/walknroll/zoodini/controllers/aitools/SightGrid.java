@@ -0,0 +1,80 @@
+package walknroll.zoodini.controllers.aitools;
+
+import java.util.Arrays;
+
+/**
+ * Which tiles block sight, as a bitset laid out like the {@link GridGraph} of the same
+ * map (index x * HEIGHT + y).
+ *
+ * Not every obstacle blocks sight: guards cannot walk through cameras or the exit, but
+ * they can see past them. Only walls and locked doors are opaque, the same bodies that
+ * stop the vision cones' Box2D rays.
+ */
+public class SightGrid {
+    public final int WIDTH;
+    public final int HEIGHT;
+    private final long[] opaque;
+
+    /**
+     * Creates a grid where every tile is clear.
+     *
+     * @param width  Number of columns
+     * @param height Number of rows
+     */
+    public SightGrid(int width, int height) {
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.opaque = new long[(width * height + 63) >>> 6];
+    }
+
+    /** Creates a copy of another grid. */
+    public SightGrid(SightGrid source) {
+        this.WIDTH = source.WIDTH;
+        this.HEIGHT = source.HEIGHT;
+        this.opaque = Arrays.copyOf(source.opaque, source.opaque.length);
+    }
+
+    /** Makes this grid a copy of another grid of the same size. */
+    public void copyFrom(SightGrid source) {
+        System.arraycopy(source.opaque, 0, opaque, 0, opaque.length);
+    }
+
+    /** Returns whether the given tile blocks sight. Tiles outside the grid do. */
+    public boolean isOpaque(int x, int y) {
+        if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT) {
+            return true;
+        }
+        int index = x * HEIGHT + y;
+        return (opaque[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** Sets whether the given tile blocks sight. Tiles outside the grid are ignored. */
+    public void setOpaque(int x, int y, boolean value) {
+        if (x < 0 || y < 0 || x >= WIDTH || y >= HEIGHT) {
+            return;
+        }
+        int index = x * HEIGHT + y;
+        if (value) {
+            opaque[index >>> 6] |= 1L << index;
+        } else {
+            opaque[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Sets whether every tile in a block blocks sight.
+     *
+     * @param startX Left column of the block (inclusive)
+     * @param startY Bottom row of the block (inclusive)
+     * @param endX   Right column of the block (exclusive)
+     * @param endY   Top row of the block (exclusive)
+     * @param value  Whether the tiles block sight
+     */
+    public void setOpaqueRegion(int startX, int startY, int endX, int endY, boolean value) {
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                setOpaque(x, y, value);
+            }
+        }
+    }
+}
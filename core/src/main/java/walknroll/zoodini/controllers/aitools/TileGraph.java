@@ -3,7 +3,7 @@ package walknroll.zoodini.controllers.aitools;
 import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
 import com.badlogic.gdx.ai.pfa.GraphPath;
 import com.badlogic.gdx.ai.pfa.Heuristic;
-import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+import com.badlogic.gdx.ai.pfa.PathFinder;
 import com.badlogic.gdx.utils.Null;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -39,43 +39,74 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
     public final int WIDTH;
 
     protected Array<TileNode> nodes;
+    /** Compact grid used for the actual searches; shares the nodes above */
+    private GridGraph searchGraph;
+    /** Clusters for hierarchical pathfinding; only built once an HPA* pathfinder is needed */
+    private ClusterGraph clusterGraph;
+    /** Nearest walkable tile of every tile, for positions that end up inside walls */
+    private NearestWalkableIndex nearestWalkable;
+    /** Distance from every tile to the nearest wall */
+    private ClearanceField clearance;
+    /** Radius of the agents in tiles; tiles too narrow for it are closed to the searches */
+    private float agentRadius;
+    /** Obstacle flags of every tile as loaded from the map, for {@link #restore()} */
+    private boolean[] mapObstacles;
+    /** Search graph and clusters as loaded from the map; null if they have to be recomputed on restore */
+    private GridGraph pristineGrid;
+    private ClusterGraph pristineClusters;
+    /** Clearance as loaded from the map */
+    private ClearanceField pristineClearance;
+    /** Whether any tile changed since the map was loaded or last restored */
+    private boolean modified;
+    /** Tile-to-tile visibility caches, one per agent radius */
+    private final Array<TileVisibility> visibilities = new Array<>();
+    /** Tiles that block sight: walls and locked doors */
+    private final SightGrid sightGrid;
+    /** Sight-blocking tiles as loaded from the map */
+    private final SightGrid pristineSight;
     public TileNode startNode;
     private Set<TileNode> targetNodes = new HashSet<>();
     private Set<TileNode> waypoints = new HashSet<>();
+    /** Size of a world unit (one map tile) in map pixels */
     public int tileWidth;
     public int tileHeight;
+    /** Navigation tiles per world unit along each axis */
     private int density;
-    private Heuristic heuristic = new ManhattanHeuristic<>();
+    private Heuristic<TileNode> heuristic;
+    /** Algorithm used by pathfinders created with {@link #createPathFinder()} */
+    private PathfinderKind pathfinderKind = DEFAULT_PATHFINDER;
 
-    boolean diagonal;
+    /** Pathfinder used when the level's Settings object does not choose one */
+    public static final PathfinderKind DEFAULT_PATHFINDER = PathfinderKind.JPS_PLUS;
 
-    /** Temporary vectors for calculations */
-    private final Vector2 tmpVec1 = new Vector2();
-    private final Vector2 tmpVec2 = new Vector2();
-    private final Vector2 tmpVec3 = new Vector2();
+    boolean diagonal;
 
     private static final float SAFETY_MARGIN = 0.25f;
 
     /**
      * Constructs a TileGraph from a TileMapTileLayer
      *
-     * @param diagonal whether diagonal movement is allowed
+     * @param diagonal whether diagonal movement is allowed, unless the level's Settings
+     *                 object says otherwise with a "diagonal" property
+     * @param density  navigation tiles per map tile along each axis, e.g. 2 to route
+     *                 through half-tile gaps
      */
     public TileGraph(TiledMap map, boolean diagonal, int density) {
         this.density = density;
         MapProperties props = map.getProperties();
         WIDTH = props.get("width", Integer.class) * density;
         HEIGHT = props.get("height", Integer.class) * density;
-        int tileWidth = map.getProperties().get("tilewidth", Integer.class) / density;
-        int tileHeight = map.getProperties().get("tileheight", Integer.class) / density;
+        tileWidth = props.get("tilewidth", Integer.class);
+        tileHeight = props.get("tileheight", Integer.class);
 
         this.nodes = new Array<TileNode>(WIDTH * HEIGHT);
+        this.sightGrid = new SightGrid(WIDTH, HEIGHT);
         this.startNode = null;
         this.diagonal = diagonal;
 
         for (int x = 0; x < WIDTH; x++) {
             for (int y = 0; y < HEIGHT; y++) {
-                nodes.add(new TileNode(x, y, false, new Array<>(4), HEIGHT));
+                nodes.add(new TileNode(x, y, false, HEIGHT));
             }
         }
 
@@ -86,10 +117,10 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
 
             Rectangle rect = ((RectangleMapObject) obj).getRectangle();
 
-            int startX = (int) (rect.x / tileWidth);
-            int startY = (int) (rect.y / tileHeight);
-            int endX = (int) ((rect.x + rect.width) / tileWidth);
-            int endY = (int) ((rect.y + rect.height) / tileHeight);
+            int startX = pixelsToTile(rect.x, tileWidth);
+            int startY = pixelsToTile(rect.y, tileHeight);
+            int endX = pixelsToTile(rect.x + rect.width, tileWidth);
+            int endY = pixelsToTile(rect.y + rect.height, tileHeight);
 
             for (int x = startX; x < endX; x++) {
                 for (int y = startY; y < endY; y++) {
@@ -99,9 +130,21 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
                     }
                 }
             }
+            sightGrid.setOpaqueRegion(startX, startY, endX, endY, true);
         }
 
         MapLayer objectLayer = map.getLayers().get("objects");
+        for (MapObject obj : objectLayer.getObjects()) {
+            if ("Settings".equalsIgnoreCase(obj.getProperties().get("type", String.class))) {
+                pathfinderKind = PathfinderKind.fromString(
+                    obj.getProperties().get("pathfinder", String.class), DEFAULT_PATHFINDER);
+                // Tiled stores it as a bool property, but accept a string too
+                Object diagonalSetting = obj.getProperties().get("diagonal");
+                if (diagonalSetting != null) {
+                    this.diagonal = Boolean.parseBoolean(diagonalSetting.toString());
+                }
+            }
+        }
         for (MapObject obj : objectLayer.getObjects()) {
             if(!(obj instanceof RectangleMapObject)){
                 continue;
@@ -119,10 +162,10 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
             Rectangle rect = ((RectangleMapObject) obj).getRectangle();
 
             if(type.equalsIgnoreCase("Door")){
-                int startX = (int) (rect.x / tileWidth);
-                int startY = (int) (rect.y / tileHeight);
-                int endX = (int) ((rect.x + rect.width) / tileWidth);
-                int endY = (int) ((rect.y + rect.height) / tileHeight);
+                int startX = pixelsToTile(rect.x, tileWidth);
+                int startY = pixelsToTile(rect.y, tileHeight);
+                int endX = pixelsToTile(rect.x + rect.width, tileWidth);
+                int endY = pixelsToTile(rect.y + rect.height, tileHeight);
 
                 for (int x = startX; x < endX; x++) {
                     for (int y = startY; y < endY; y++) {
@@ -132,12 +175,15 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
                         }
                     }
                 }
+                sightGrid.setOpaqueRegion(startX, startY, endX, endY, true);
             } else {
+                // Cameras and the exit cannot be walked through, but can be seen past
 
-                int startX = (int) (rect.x / tileWidth);
-                int startY = (int) (rect.y / tileHeight);
-                int endX = (int) ((rect.x + rect.width) / tileWidth);
-                int endY = (int) ((rect.y + rect.height) / tileHeight);
+
+                int startX = pixelsToTile(rect.x, tileWidth);
+                int startY = pixelsToTile(rect.y, tileHeight);
+                int endX = pixelsToTile(rect.x + rect.width, tileWidth);
+                int endY = pixelsToTile(rect.y + rect.height, tileHeight);
 
                 for (int x = startX; x <= endX; x++) {
                     for (int y = startY; y <= endY; y++) {
@@ -149,53 +195,308 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
                 }
             }
         }
-        addConnections();
+        TileNode[] cells = new TileNode[nodes.size];
+        for (int i = 0; i < nodes.size; i++) {
+            cells[i] = nodes.get(i);
+        }
+        // Diagonal moves never cut a blocked corner, and cost sqrt(2)
+        searchGraph = new GridGraph(cells, WIDTH, HEIGHT, this.diagonal);
+        heuristic = this.diagonal ? new OctileHeuristic<>() : new ManhattanHeuristic<>();
+        nearestWalkable = new NearestWalkableIndex(searchGraph);
+        clearance = new ClearanceField(searchGraph);
+
+        mapObstacles = new boolean[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            mapObstacles[i] = cells[i].isObstacle;
+        }
+        pristineGrid = new GridGraph(searchGraph);
+        pristineClearance = new ClearanceField(clearance);
+        pristineSight = new SightGrid(sightGrid);
     }
 
-    public void addConnections(){
-        for (int x = 0; x < WIDTH; x++) {
-            int idx = x * HEIGHT;
-            for (int y = 0; y < HEIGHT; y++) {
-                TileNode n = nodes.get(idx + y);
-                if (x > 0)
-                    addConnection(n, -1, 0);
-                if (y > 0)
-                    addConnection(n, 0, -1);
-                if (x < WIDTH - 1)
-                    addConnection(n, 1, 0);
-                if (y < HEIGHT - 1)
-                    addConnection(n, 0, 1);
+    /**
+     * Returns the navigation density chosen by the "density" property of the map's
+     * Settings object, or the fallback if there is none.
+     *
+     * @param map      The level's map
+     * @param fallback The density to use if the map does not choose one
+     */
+    public static int readDensity(TiledMap map, int fallback) {
+        MapLayer objectLayer = map.getLayers().get("objects");
+        if (objectLayer == null) {
+            return fallback;
+        }
+        for (MapObject obj : objectLayer.getObjects()) {
+            if ("Settings".equalsIgnoreCase(obj.getProperties().get("type", String.class))) {
+                Integer density = obj.getProperties().get("density", Integer.class);
+                if (density != null && density > 0) {
+                    return density;
+                }
             }
         }
+        return fallback;
     }
 
+    /**
+     * Returns how vision cones should find walls, as chosen by the "vision" property of the
+     * map's Settings object, or the fallback if there is none.
+     *
+     * @param map      The level's map
+     * @param fallback The backend to use if the map does not choose one
+     */
+    public static VisionBackend readVisionBackend(TiledMap map, VisionBackend fallback) {
+        MapLayer objectLayer = map.getLayers().get("objects");
+        if (objectLayer == null) {
+            return fallback;
+        }
+        for (MapObject obj : objectLayer.getObjects()) {
+            if ("Settings".equalsIgnoreCase(obj.getProperties().get("type", String.class))) {
+                return VisionBackend.fromString(obj.getProperties().get("vision", String.class), fallback);
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Converts a map pixel coordinate to the index of the navigation tile containing it.
+     * Computed in floating point, since a map tile need not split evenly into pixels.
+     */
+    private int pixelsToTile(float pixels, int pixelsPerUnit) {
+        return (int) (pixels * density / pixelsPerUnit);
+    }
+
+    /**
+     * Rebuilds the connectivity of the whole graph from the nodes' obstacle flags.
+     * Call this after changing {@link TileNode#isObstacle} directly; prefer
+     * {@link #setObstacleRegion} when only a few tiles change.
+     */
+    public void addConnections(){
+        modified = true;
+        clearance.rebuild();
+        searchGraph.refresh();
+        if (clusterGraph != null) {
+            clusterGraph.rebuild();
+        }
+        for (TileVisibility visibility : visibilities) {
+            visibility.clear();
+        }
+    }
+
+    /**
+     * Updates the connectivity around a single node after its obstacle flag changed.
+     *
+     * @param n the node that changed
+     */
     public void redoConnections(TileNode n) {
-        int i = n.getIndex();
-        int x = i % WIDTH;
-        int y = i / WIDTH;
+        searchGraph.setObstacle(n.getIndex(), n.isObstacle);
+        regionChanged(n.x, n.y, n.x + 1, n.y + 1);
+    }
+
+    /**
+     * Marks a rectangular block of tiles as blocked or free, e.g. when a door unlocks.
+     * Only the block and its immediate neighbours are rebuilt, along with the clearance,
+     * HPA* clusters and cached visibility around it, and the graph version is bumped so
+     * that cached paths are invalidated.
+     *
+     * @param startX   Left tile column of the block (inclusive)
+     * @param startY   Bottom tile row of the block (inclusive)
+     * @param endX     Right tile column of the block (exclusive)
+     * @param endY     Top tile row of the block (exclusive)
+     * @param obstacle Whether the tiles are now obstacles
+     */
+    public void setObstacleRegion(int startX, int startY, int endX, int endY, boolean obstacle) {
+        searchGraph.setObstacleRegion(startX, startY, endX, endY, obstacle);
+        if (!obstacle) {
+            // Opened tiles (unlocked doors) can be seen through as well
+            sightGrid.setOpaqueRegion(startX, startY, endX, endY, false);
+        }
+        regionChanged(startX, startY, endX, endY);
+    }
+
+    /**
+     * Marks every tile overlapping a rectangle of the world as blocked or free. Like
+     * {@link #setObstacleRegion}, but in world units, so callers need not know the density.
+     *
+     * @param x        Left edge of the rectangle in world coordinates
+     * @param y        Bottom edge of the rectangle in world coordinates
+     * @param width    Width of the rectangle in world units
+     * @param height   Height of the rectangle in world units
+     * @param obstacle Whether the tiles are now obstacles
+     */
+    public void setObstacleArea(float x, float y, float width, float height, boolean obstacle) {
+        setObstacleRegion(MathUtils.floor(x * density), MathUtils.floor(y * density),
+            MathUtils.ceil((x + width) * density), MathUtils.ceil((y + height) * density), obstacle);
+    }
 
-        if (x > 0)
-            addConnection(n, -1, 0);
-        if (y > 0)
-            addConnection(n, 0, -1);
-        if (x < WIDTH - 1)
-            addConnection(n, 1, 0);
-        if (y < HEIGHT - 1)
-            addConnection(n, 0, 1);
+    /**
+     * Brings everything derived from the obstacles up to date after a block of tiles
+     * changed in the search graph.
+     */
+    private void regionChanged(int startX, int startY, int endX, int endY) {
+        clearance.updateRegion(startX, startY, endX, endY);
+        if (agentRadius > 0) {
+            // Tiles around the block may have become wide enough, or too narrow, for agents
+            startX -= ClearanceField.REACH;
+            startY -= ClearanceField.REACH;
+            endX += ClearanceField.REACH;
+            endY += ClearanceField.REACH;
+            searchGraph.refreshRegion(startX, startY, endX, endY);
+        }
+        modified = true;
+        if (clusterGraph != null) {
+            clusterGraph.rebuildRegion(startX, startY, endX, endY);
+        }
+        for (TileVisibility visibility : visibilities) {
+            visibility.invalidateRegion(startX, startY, endX, endY);
+        }
+    }
+
+    /**
+     * Puts every tile back the way the map had it, e.g. when the level restarts. The
+     * search graph, clearance and HPA* clusters are copied back in bulk from the state
+     * saved when the map was loaded, so this is much cheaper than building a new graph.
+     */
+    public void restore() {
+        if (!modified) {
+            return;
+        }
+        for (int i = 0; i < nodes.size; i++) {
+            nodes.get(i).isObstacle = mapObstacles[i];
+        }
+        clearance.copyFrom(pristineClearance);
+        sightGrid.copyFrom(pristineSight);
+        if (pristineGrid != null) {
+            searchGraph.copyFrom(pristineGrid);
+        } else {
+            // The agent radius changed while tiles were changed; recompute from the flags
+            searchGraph.refresh();
+            pristineGrid = new GridGraph(searchGraph);
+        }
+        if (clusterGraph != null) {
+            if (pristineClusters != null) {
+                clusterGraph.copyFrom(pristineClusters);
+            } else {
+                clusterGraph.rebuild();
+                pristineClusters = new ClusterGraph(clusterGraph);
+            }
+        }
+        // Cheaper than invalidating around every change; rows fill again as they are used
+        for (TileVisibility visibility : visibilities) {
+            visibility.clear();
+        }
+        modified = false;
+    }
+
+    /**
+     * Sets the radius of the agents that walk this graph. Tiles where an agent of this
+     * radius cannot stand, even half a tile off centre, are then closed to the searches.
+     * At the default density walkable tiles always have room for the avatars and guards,
+     * so this only closes anything on finer grids.
+     *
+     * @param radius The agent radius in world units; 0 to close no extra tiles
+     */
+    public void setAgentRadius(float radius) {
+        if (radius * density == agentRadius) {
+            return;
+        }
+        agentRadius = radius * density;
+        searchGraph.setClearance(agentRadius > 0 ? clearance : null, agentRadius);
+        if (clusterGraph != null) {
+            clusterGraph.rebuild();
+        }
+        for (TileVisibility visibility : visibilities) {
+            visibility.clear();
+        }
+        // What restore() puts back depends on the radius
+        if (modified) {
+            pristineGrid = null;
+            pristineClusters = null;
+        } else {
+            pristineGrid.copyFrom(searchGraph);
+            pristineClusters = clusterGraph == null ? null : new ClusterGraph(clusterGraph);
+        }
+    }
+
+    /**
+     * Returns the distance from every tile to the nearest wall. It is kept up to date by
+     * the same methods as the search graph.
+     */
+    public ClearanceField getClearance() {
+        return clearance;
+    }
+
+    /**
+     * Creates a new pathfinder over this graph, using the algorithm chosen by the level
+     * (see {@link PathfinderKind}). Pathfinders keep per-search state, so every user
+     * should create its own.
+     */
+    public PathFinder<TileNode> createPathFinder() {
+        if (pathfinderKind == PathfinderKind.HPA) {
+            return new ClusterPathFinder(getClusterGraph(), true);
+        }
+        return pathfinderKind.createPathFinder(searchGraph);
     }
 
+    /**
+     * Returns the clusters used by hierarchical pathfinding, building them on first use.
+     * They are kept up to date by the same methods as the search graph.
+     */
+    public ClusterGraph getClusterGraph() {
+        if (clusterGraph == null) {
+            clusterGraph = new ClusterGraph(searchGraph, ClusterGraph.DEFAULT_CLUSTER_SIZE);
+            if (!modified) {
+                pristineClusters = new ClusterGraph(clusterGraph);
+            }
+        }
+        return clusterGraph;
+    }
 
     /**
-     * Helper method for adding edges to a node. Modifies TileNode n's connections.
+     * Returns the tile-to-tile visibility cache for agents of the given radius, creating
+     * it on first use. It is kept up to date by the same methods as the search graph.
      *
-     * @param n       a node
-     * @param xOffset x offset of neighbor node
-     * @param yOffset y offset of neighbor node
+     * @param radius Radius of the agent in tiles; 0 for a plain line of sight
      */
-    private void addConnection(TileNode n, int xOffset, int yOffset) {
-        TileNode t = getNode(n.x + xOffset, n.y + yOffset);
-        if (t != null && !t.isObstacle)
-            n.getConnections().add(new TileEdge(this, n, t));
+    public TileVisibility getVisibility(float radius) {
+        for (TileVisibility visibility : visibilities) {
+            if (visibility.getRadius() == radius) {
+                return visibility;
+            }
+        }
+        TileVisibility visibility = new TileVisibility(searchGraph, clearance, radius);
+        visibilities.add(visibility);
+        return visibility;
+    }
+
+    public PathfinderKind getPathfinderKind() {
+        return pathfinderKind;
+    }
+
+    /** Returns whether agents may move diagonally between tiles. */
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    /**
+     * Returns the heuristic matching the graph's moves: octile distance with diagonal
+     * moves, Manhattan distance without. Heuristics are stateless, so it can be shared.
+     */
+    public Heuristic<TileNode> getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Returns the compact grid graph that pathfinders should search. It shares its
+     * nodes with this graph and is kept in sync by {@link #addConnections()} and
+     * {@link #redoConnections(TileNode)}.
+     */
+    public GridGraph getSearchGraph() {
+        return searchGraph;
+    }
+
+    /** Returns the tiles that block sight, kept up to date as doors open. */
+    public SightGrid getSightGrid() {
+        return sightGrid;
     }
 
     public TileNode getNode(int x, int y) {
@@ -215,6 +516,22 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
         return nodes.get(index);
     }
 
+    /**
+     * Returns the node with the given index (see {@link TileNode#getIndex()}).
+     */
+    public TileNode getNodeByIndex(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Returns the current version of the graph. The version changes every time the
+     * connections of the graph are rebuilt, so anything derived from an older version
+     * (such as a cached path) should be recomputed.
+     */
+    public int getVersion() {
+        return searchGraph.getVersion();
+    }
+
     @Override
     public int getIndex(TileNode node) {
         return node.getIndex();
@@ -227,7 +544,7 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
 
     @Override
     public Array<Connection<TileNode>> getConnections(TileNode fromNode) {
-        return fromNode.getConnections();
+        return searchGraph.getConnections(fromNode);
     }
 
     Affine2 cache = new Affine2();
@@ -349,15 +666,15 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
 
     /**
      * Converts world coordinates to a TileNode.
-     * World coordinates represent the bottom-left corner of each 1x1 meter tile.
+     * Each 1x1 meter of the world holds density x density tiles.
      *
      * @param worldCoords the world coordinates to convert
      * @return the TileNode at the specified world coordinates, or null if out of
      *         bounds
      */
     public TileNode worldToTile(Vector2 worldCoords) {
-        int tileX = MathUtils.floor(worldCoords.x) * density;
-        int tileY = MathUtils.floor(worldCoords.y) * density;
+        int tileX = MathUtils.floor(worldCoords.x * density);
+        int tileY = MathUtils.floor(worldCoords.y * density);
 
         // Make sure coordinates are within bounds
         tileX = MathUtils.clamp(tileX, 0, WIDTH - 1);
@@ -377,40 +694,50 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
      * @return a Vector2 containing the world coordinates of the tile's center
      */
     public Vector2 tileToWorld(TileNode tile) {
+        return tileToWorld(tile, new Vector2());
+    }
+
+    /**
+     * Converts tile grid coordinates to world center coordinates without allocating.
+     *
+     * @param tile the TileNode to convert
+     * @param out  the vector to store the tile's center in; set to zero if tile is null
+     * @return out, for chaining
+     */
+    public Vector2 tileToWorld(TileNode tile, Vector2 out) {
         if (tile != null) {
-            return new Vector2((tile.x + 0.5f) / density, (tile.y + 0.5f) / density);
+            return out.set((tile.x + 0.5f) / density, (tile.y + 0.5f) / density);
         }
-        return new Vector2();
+        return out.setZero();
     }
 
+    /**
+     * Returns the tile at the given position, or the nearest walkable tile if that one
+     * is an obstacle. Uses a precomputed table, see {@link NearestWalkableIndex}.
+     *
+     * @param pos the position to check (in World Coords)
+     * @return the nearest walkable tile, or null if out of bounds
+     */
     public TileNode findNearestNonObstacleNode(Vector2 pos) {
         TileNode targetNode = this.worldToTile(pos);
         if (targetNode == null || !targetNode.isObstacle) {
             return targetNode;
         }
-
-        float minDistance = Float.MAX_VALUE;
-        TileNode nearestNode = null;
-
-        for (TileNode node : nodes) {
-            if (!node.isObstacle) {
-                float distance = tileToWorld(node).dst(pos);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    nearestNode = node;
-                }
-            }
-        }
-
-        return nearestNode;
+        return nearestWalkable.get(targetNode);
     }
 
+    /**
+     * Brings the lazily built lookup tables up to date with the current obstacles. After
+     * this, {@link #getNearestValidTile} and {@link #getValidTileCoords} only read the graph
+     * and may be called from several threads at once, until the obstacles change again.
+     */
+    public void refreshLookups() {
+        nearestWalkable.refresh();
+    }
 
     /**
      * Returns the Tile of the nearest non-wall tile to the given target location
      * If the target location is not a wall, it returns the target location itself.
-     * This function only looks 1 layer away from the target location (unlike
-     * findNearestNonObstacleNode).
      *
      * @param targetLocation the target location to check (in World Coords)
      * @return the nearest valid tile
@@ -420,28 +747,9 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
         if (targetTile == null) {
             return null; // Out of bounds
         }
-        int[][] horizontal = { { 0, 1 }, { 0, -1 }, { 1, 0 }, { -1, 0 } };
-        // Check all 4 directions for valid tile
-        for (int[] coord : horizontal) {
-            int newX = targetTile.x + coord[0];
-            int newY = targetTile.y + coord[1];
-            TileNode newTile = getNode(newX, newY);
-            if (newTile != null && !newTile.isObstacle) {
-                return getNode(newX, newY);
-            }
-        }
-        // Check all 4 corners if needed
-        int[][] corners = { { 1, 1 }, { -1, 1 }, { -1, 1 }, { -1, 1 } };
-        for (int[] coord : corners) {
-            int newX = targetTile.x + coord[0];
-            int newY = targetTile.y + coord[1];
-            TileNode newTile = getNode(newX, newY);
-            if (newTile != null && !newTile.isObstacle) {
-                return getNode(newX, newY);
-            }
-        }
-        // Nearest non-wall tile is not 1 layer away (shouldn't happen)
-        return targetTile;
+        TileNode nearest = nearestWalkable.get(targetTile);
+        // No walkable tile anywhere (shouldn't happen)
+        return nearest != null ? nearest : targetTile;
     }
 
     /**
@@ -453,7 +761,7 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
      * @return A list of nodes representing the path from start to target, excluding
      *         the start node
      */
-    public List<TileNode> getPath(Vector2 currPosWorld, Vector2 targetPosWorld, IndexedAStarPathFinder pathFinder) {
+    public List<TileNode> getPath(Vector2 currPosWorld, Vector2 targetPosWorld, PathFinder<TileNode> pathFinder) {
         GraphPath<TileNode> graphPath = new DefaultGraphPath<>();
         TileNode start = worldToTile(currPosWorld);
         TileNode end = worldToTile(targetPosWorld);
@@ -493,6 +801,11 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
         return tileWidth;
     }
 
+    /** Returns the number of tiles per world unit along each axis. */
+    public int getDensity() {
+        return density;
+    }
+
     /**
      * Determines if three points form a corner by measuring the change in direction.
      *
@@ -535,91 +848,58 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
         }
     }
 
+    /**
+     * Like {@link #getValidTileCoords(Vector2)}, but stores the result in the given vector
+     * instead of allocating one.
+     *
+     * @param target The target position to check
+     * @param out    The vector to store the valid position in; may be target itself
+     * @return out, for chaining
+     */
+    public Vector2 getValidTileCoords(Vector2 target, Vector2 out) {
+        TileNode targetTile = worldToTile(target);
+        if (targetTile == null || !targetTile.isObstacle) {
+            return out.set(target);
+        }
+        return tileToWorld(getNearestValidTile(target), out);
+    }
+
     /**
      * Checks if there's a clear line of sight between two points.
-     * Uses Bresenham's line algorithm to check for obstacles.
+     * Walks every tile the segment passes through (see {@link GridRaycast}); the tile
+     * containing the end point is not checked.
      *
      * @param start The starting point
      * @param end The ending point
      * @return true if there's a clear line of sight, false otherwise
      */
     public boolean hasLineOfSight(Vector2 start, Vector2 end) {
+        return GridRaycast.isClear(searchGraph, start.x * density, start.y * density,
+            end.x * density, end.y * density, false);
+    }
 
-        int x0 = (int)start.x;
-        int y0 = (int)start.y;
-        int x1 = (int)end.x;
-        int y1 = (int)end.y;
-
-        int dx = Math.abs(x1 - x0);
-        int dy = Math.abs(y1 - y0);
-        int sx = x0 < x1 ? 1 : -1;
-        int sy = y0 < y1 ? 1 : -1;
-        int err = dx - dy;
-
-        while (x0 != x1 || y0 != y1) {
-            TileNode node = worldToTile(new Vector2(x0, y0));
-
-            // Check if this tile is an obstacle
-            if (node != null && node.isObstacle) {
-                return false;
-            }
-
-            int e2 = 2 * err;
-            if (e2 > -dy) {
-                err -= dy;
-                x0 += sx;
-            }
-            if (e2 < dx) {
-                err += dx;
-                y0 += sy;
-            }
-        }
-
-        return true;
+    /**
+     * Checks if there's a clear line of sight between the centres of two tiles. Answers
+     * are cached, so repeated queries between the same tiles cost a lookup.
+     *
+     * @param from The starting tile
+     * @param to The ending tile
+     * @return true if there's a clear line of sight, false otherwise
+     */
+    public boolean hasLineOfSight(TileNode from, TileNode to) {
+        return getVisibility(0).isVisible(from.getIndex(), to.getIndex());
     }
 
     /**
-     * Enhanced line of sight check that detects corners and obstacles
+     * Enhanced line of sight check that detects corners and obstacles: the line must also
+     * stay {@link #SAFETY_MARGIN} away from obstacles on both sides.
      */
     public boolean hasEnhancedLineOfSight(Vector2 start, Vector2 end) {
-        // Basic line of sight check using TileGraph
-        if (!hasLineOfSight(start, end)) {
-            return false;
-        }
-
-        // Additional check: Ensure the path doesn't go too close to obstacles
-        Vector2 dir = tmpVec1.set(end).sub(start).nor();
-        Vector2 perpendicular = tmpVec2.set(-dir.y, dir.x).nor().scl(SAFETY_MARGIN);
-
-        float distance = start.dst(end);
-        float step = 0.5f; // Check every half unit
-
-        // Sample points along the path
-        for (float dist = 0; dist < distance; dist += step) {
-            // Position on the direct line
-            Vector2 pos = tmpVec3.set(start).add(dir.x * dist, dir.y * dist);
-
-            // Check points to the left and right of the line
-            Vector2 leftPos = new Vector2(pos).add(perpendicular);
-            Vector2 rightPos = new Vector2(pos).sub(perpendicular);
-
-            // Check if any of these positions would hit an obstacle
-            TileNode leftNode = worldToTile(leftPos);
-            TileNode rightNode = worldToTile(rightPos);
-
-            if ((leftNode != null && leftNode.isObstacle) ||
-                (rightNode != null && rightNode.isObstacle)) {
-                return false; // Too close to an obstacle
-            }
-        }
-
-        return true;
+        return GridRaycast.isClear(searchGraph, clearance, start.x * density, start.y * density,
+            end.x * density, end.y * density, SAFETY_MARGIN * density, false);
     }
 
     public void dispose(){
-        for(TileNode n : nodes){
-            n.dispose();
-        }
         nodes.clear();
         nodes = null;
         targetNodes.clear();
@@ -627,5 +907,12 @@ public class TileGraph<N extends TileNode> implements IndexedGraph<TileNode> {
         waypoints.clear();;
         waypoints = null;
         heuristic = null;
+        nearestWalkable = null;
+        visibilities.clear();
+        clearance = null;
+        mapObstacles = null;
+        pristineGrid = null;
+        pristineClusters = null;
+        pristineClearance = null;
     }
 }
@@ -1,8 +1,6 @@
 package walknroll.zoodini.controllers.aitools;
 
-import com.badlogic.gdx.ai.pfa.Connection;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.utils.Array;
 import edu.cornell.gdiac.physics2.ObstacleData;
 
 public class TileNode {
@@ -14,12 +12,10 @@ public class TileNode {
     public final int y;
     private final int mapHeight;
     public boolean isObstacle;
-    protected Array<Connection<TileNode>> connections;
 
-    public TileNode(int x, int y, boolean isObstacle, Array<Connection<TileNode>> connections, int mapHeight) {
+    public TileNode(int x, int y, boolean isObstacle, int mapHeight) {
         this.x = x;
         this.y = y;
-        this.connections = connections;
         this.mapHeight = mapHeight;
         this.isObstacle = isObstacle;
     }
@@ -29,16 +25,7 @@ public class TileNode {
         return x * mapHeight + y;
     }
 
-    public Array<Connection<TileNode>> getConnections() {
-        return this.connections;
-    }
-
     public Vector2 getCoords() {
         return new Vector2(x, y);
     }
-
-    public void dispose(){
-        connections.clear();
-        connections = null;
-    }
 }
@@ -0,0 +1,154 @@
+package walknroll.zoodini.controllers.aitools;
+
+/**
+ * Cache of tile-to-tile visibility for one agent radius.
+ *
+ * A full visibility matrix needs a bit per pair of tiles, which is too much for the larger
+ * maps, so rows are filled in lazily instead: the first query between two tile centres
+ * casts the ray (see {@link GridRaycast}), and every later query for the same pair is a
+ * bit lookup. Each row holds two bits per target tile, "known" and "clear", and is only
+ * allocated once a query from its tile comes in.
+ *
+ * When obstacles change, {@link #invalidateRegion} forgets only the pairs whose ray could
+ * pass through the changed tiles. If the grid changes without being reported the whole
+ * cache is dropped on the next query.
+ */
+public class TileVisibility {
+    /** Rows beyond this many are not cached, to bound memory on very large maps */
+    private static final int MAX_ROWS = 4096;
+
+    private final GridGraph grid;
+    /** Used to skip casting the edges of rays that stay well away from walls */
+    private final ClearanceField clearance;
+    /** Radius of the agent the rays are cast for, in tiles */
+    private final float radius;
+    /** Per source tile: {@link #words} longs of known bits followed by as many clear bits */
+    private final long[][] rows;
+    private final int words;
+    private int rowCount;
+
+    /** Grid version the cached pairs are valid for */
+    private int version;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param grid      The grid to test against
+     * @param clearance The clearance of the grid's tiles, or null
+     * @param radius    Radius of the agent, in tiles; 0 for a plain line of sight
+     */
+    public TileVisibility(GridGraph grid, ClearanceField clearance, float radius) {
+        this.grid = grid;
+        this.clearance = clearance;
+        this.radius = radius;
+        this.rows = new long[grid.getNodeCount()][];
+        this.words = (grid.getNodeCount() + 63) >>> 6;
+        this.version = grid.getVersion();
+    }
+
+    /** Returns the agent radius this cache was made for, in tiles. */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns whether an agent can move in a straight line between the centres of two
+     * tiles, using the cached answer if there is one.
+     *
+     * @param from The index of the start tile
+     * @param to   The index of the end tile
+     */
+    public boolean isVisible(int from, int to) {
+        if (version != grid.getVersion()) {
+            clear();
+        }
+        // Visibility is symmetric, so both directions share the row of the lower index
+        int source = Math.min(from, to);
+        int target = Math.max(from, to);
+        long[] row = rows[source];
+        if (row == null && rowCount < MAX_ROWS) {
+            row = new long[words * 2];
+            rows[source] = row;
+            rowCount++;
+        }
+        int word = target >>> 6;
+        long bit = 1L << target;
+        if (row != null && (row[word] & bit) != 0) {
+            hits++;
+            return (row[words + word] & bit) != 0;
+        }
+
+        misses++;
+        boolean visible = cast(source, target);
+        if (row != null) {
+            row[word] |= bit;
+            if (visible) {
+                row[words + word] |= bit;
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Forgets every cached pair whose ray could pass through the given block of tiles.
+     * Call this after the block has changed.
+     *
+     * @param startX Left column of the block (inclusive)
+     * @param startY Bottom row of the block (inclusive)
+     * @param endX   Right column of the block (exclusive)
+     * @param endY   Top row of the block (exclusive)
+     */
+    public void invalidateRegion(int startX, int startY, int endX, int endY) {
+        int height = grid.HEIGHT;
+        // Rays of a wide agent reach up to a tile beyond their end points' bounding box
+        int margin = (int) Math.ceil(radius) + 1;
+        for (int source = 0; source < rows.length; source++) {
+            long[] row = rows[source];
+            if (row == null) {
+                continue;
+            }
+            int sx = source / height;
+            int sy = source % height;
+            for (int word = 0; word < words; word++) {
+                long known = row[word];
+                while (known != 0) {
+                    int target = (word << 6) + Long.numberOfTrailingZeros(known);
+                    known &= known - 1;
+                    int tx = target / height;
+                    int ty = target % height;
+                    if (Math.max(sx, tx) + margin >= startX && Math.min(sx, tx) - margin < endX
+                            && Math.max(sy, ty) + margin >= startY && Math.min(sy, ty) - margin < endY) {
+                        long bit = 1L << target;
+                        row[word] &= ~bit;
+                        row[words + word] &= ~bit;
+                    }
+                }
+            }
+        }
+        version = grid.getVersion();
+    }
+
+    /** Forgets every cached pair. */
+    public void clear() {
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = null;
+        }
+        rowCount = 0;
+        version = grid.getVersion();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private boolean cast(int from, int to) {
+        int height = grid.HEIGHT;
+        return GridRaycast.isClear(grid, clearance, from / height + 0.5f, from % height + 0.5f,
+            to / height + 0.5f, to % height + 0.5f, radius, true);
+    }
+}
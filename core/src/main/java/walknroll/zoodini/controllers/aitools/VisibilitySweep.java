@@ -0,0 +1,258 @@
+package walknroll.zoodini.controllers.aitools;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * Builds the exact visible part of a vision cone from the wall rectangles of a level, by
+ * sweeping rays over the angles where what is visible can change.
+ *
+ * Rays at fixed angles waste most of their work on open space and can still miss a thin
+ * wall corner. Here, the corners of the walls near the cone are sorted by angle, and a
+ * ray is cast at each corner and just to either side of it. Between two neighbouring
+ * rays the visible boundary is then a single straight piece of wall, so joining their
+ * ends gives the exact polygon. Where no wall is in reach the boundary is the cone's arc,
+ * which is split into pieces of at most {@link #ARC_STEP} so it stays round. A cone in
+ * an open yard therefore takes a handful of rays, and one in a corridor as many as its
+ * corners need.
+ *
+ * Walls are axis-aligned rectangles in world units, like the wall bodies in the level.
+ * An occluder can be switched off, e.g. when its door is unlocked.
+ */
+public class VisibilitySweep {
+    /** Angle either side of a corner the extra rays are cast at, in radians */
+    private static final float EPSILON = 1e-4f;
+    /** Longest piece of arc between two rays, in radians */
+    private static final float ARC_STEP = (float) Math.toRadians(5);
+    private static final float TWO_PI = (float) (Math.PI * 2);
+
+    /** Bounds of every occluder, and whether it blocks sight */
+    private float[] minX = new float[16];
+    private float[] minY = new float[16];
+    private float[] maxX = new float[16];
+    private float[] maxY = new float[16];
+    private boolean[] enabled = new boolean[16];
+    private int size;
+
+    /** Occluders near the cone being built */
+    private int[] candidates = new int[16];
+    private int candidateCount;
+    /** Angles to cast rays at, measured from the start of the cone */
+    private float[] angles = new float[64];
+    private int angleCount;
+
+    /**
+     * Adds an occluder.
+     *
+     * @param x      Left edge, in world units
+     * @param y      Bottom edge, in world units
+     * @param width  Width, in world units
+     * @param height Height, in world units
+     * @return The number of the occluder, for {@link #setEnabled}
+     */
+    public int add(float x, float y, float width, float height) {
+        if (size == minX.length) {
+            int capacity = size * 2;
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            enabled = Arrays.copyOf(enabled, capacity);
+        }
+        minX[size] = x;
+        minY[size] = y;
+        maxX[size] = x + width;
+        maxY[size] = y + height;
+        enabled[size] = true;
+        return size++;
+    }
+
+    /**
+     * Sets whether the occluder with the given number blocks sight.
+     *
+     * @return Whether this changed it
+     */
+    public boolean setEnabled(int id, boolean value) {
+        if (enabled[id] == value) {
+            return false;
+        }
+        enabled[id] = value;
+        return true;
+    }
+
+    /** Returns the number of occluders. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds the visible part of a cone as a fan: the boundary points in order of angle,
+     * followed by the origin. Occluders containing the origin are ignored.
+     *
+     * @param x        Origin x, in world units
+     * @param y        Origin y, in world units
+     * @param radius   How far the cone reaches, in world units
+     * @param facing   Angle of the centre of the cone, in degrees
+     * @param wideness Angle the cone spans, in degrees
+     * @param out      Cleared and filled with the x and y of every point
+     * @return The number of boundary points, not counting the origin
+     */
+    public int build(float x, float y, float radius, float facing, float wideness, FloatArray out) {
+        float start = (float) Math.toRadians(facing - wideness / 2);
+        float width = (float) Math.toRadians(Math.min(wideness, 360));
+        gatherCandidates(x, y, radius);
+
+        angleCount = 0;
+        addAngle(0);
+        addAngle(width);
+        for (int c = 0; c < candidateCount; c++) {
+            int i = candidates[c];
+            addCorner(x, y, radius, minX[i], minY[i], start, width);
+            addCorner(x, y, radius, maxX[i], minY[i], start, width);
+            addCorner(x, y, radius, maxX[i], maxY[i], start, width);
+            addCorner(x, y, radius, minX[i], maxY[i], start, width);
+            // Walls crossing the arc end the visible boundary where they cross it
+            addCrossings(x, y, radius, minX[i], minY[i], maxX[i], minY[i], start, width);
+            addCrossings(x, y, radius, maxX[i], minY[i], maxX[i], maxY[i], start, width);
+            addCrossings(x, y, radius, minX[i], maxY[i], maxX[i], maxY[i], start, width);
+            addCrossings(x, y, radius, minX[i], minY[i], minX[i], maxY[i], start, width);
+        }
+        Arrays.sort(angles, 0, angleCount);
+
+        out.clear();
+        float previous = 0;
+        int points = 0;
+        for (int a = 0; a < angleCount; a++) {
+            float angle = angles[a];
+            if (a > 0 && angle - previous < EPSILON / 4) {
+                continue;
+            }
+            // Keep the arc round where no corner needs a ray
+            int pieces = a > 0 ? (int) Math.ceil((angle - previous) / ARC_STEP) : 1;
+            for (int p = 1; p <= pieces; p++) {
+                float ray = a > 0 ? previous + (angle - previous) * p / pieces : angle;
+                float dx = (float) Math.cos(start + ray);
+                float dy = (float) Math.sin(start + ray);
+                float distance = cast(x, y, dx, dy, radius);
+                out.add(x + dx * distance);
+                out.add(y + dy * distance);
+                points++;
+            }
+            previous = angle;
+        }
+        out.add(x);
+        out.add(y);
+        return points;
+    }
+
+    /** Collects the enabled occluders that overlap the circle and do not contain its centre. */
+    private void gatherCandidates(float x, float y, float radius) {
+        candidateCount = 0;
+        float radius2 = radius * radius;
+        for (int i = 0; i < size; i++) {
+            if (!enabled[i]) {
+                continue;
+            }
+            float dx = x < minX[i] ? minX[i] - x : (x > maxX[i] ? x - maxX[i] : 0);
+            float dy = y < minY[i] ? minY[i] - y : (y > maxY[i] ? y - maxY[i] : 0);
+            if (dx == 0 && dy == 0) {
+                continue;
+            }
+            if (dx * dx + dy * dy <= radius2) {
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                }
+                candidates[candidateCount++] = i;
+            }
+        }
+    }
+
+    /** Adds rays at a corner in reach and just either side of it. */
+    private void addCorner(float x, float y, float radius, float cornerX, float cornerY, float start, float width) {
+        float dx = cornerX - x;
+        float dy = cornerY - y;
+        if (dx * dx + dy * dy > radius * radius) {
+            return;
+        }
+        float angle = relativeAngle(dx, dy, start, width);
+        addAngle(angle - EPSILON, width);
+        addAngle(angle, width);
+        addAngle(angle + EPSILON, width);
+    }
+
+    /** Adds rays where a wall edge crosses the circle. */
+    private void addCrossings(float x, float y, float radius, float x0, float y0, float x1, float y1,
+                              float start, float width) {
+        // Solve |p0 + t (p1 - p0) - origin| = radius for t in [0, 1]
+        float ex = x1 - x0;
+        float ey = y1 - y0;
+        float fx = x0 - x;
+        float fy = y0 - y;
+        float a = ex * ex + ey * ey;
+        float b = 2 * (fx * ex + fy * ey);
+        float c = fx * fx + fy * fy - radius * radius;
+        float discriminant = b * b - 4 * a * c;
+        if (a == 0 || discriminant < 0) {
+            return;
+        }
+        float root = (float) Math.sqrt(discriminant);
+        for (int sign = -1; sign <= 1; sign += 2) {
+            float t = (-b + sign * root) / (2 * a);
+            if (t >= 0 && t <= 1) {
+                addAngle(relativeAngle(fx + t * ex, fy + t * ey, start, width), width);
+            }
+        }
+    }
+
+    /** Returns the angle of a direction measured from the start of the cone, in [0, 2 pi). */
+    private static float relativeAngle(float dx, float dy, float start, float width) {
+        float angle = (float) Math.atan2(dy, dx) - start;
+        angle %= TWO_PI;
+        if (angle < 0) {
+            angle += TWO_PI;
+        }
+        // Just below the start counts as the start, not as the far end of the circle
+        if (angle > TWO_PI - EPSILON && width < TWO_PI - EPSILON) {
+            angle -= TWO_PI;
+        }
+        return angle;
+    }
+
+    /** Adds an angle if it lies inside the cone. */
+    private void addAngle(float angle, float width) {
+        if (angle >= 0 && angle <= width) {
+            addAngle(angle);
+        }
+    }
+
+    private void addAngle(float angle) {
+        if (angleCount == angles.length) {
+            angles = Arrays.copyOf(angles, angleCount * 2);
+        }
+        angles[angleCount++] = angle;
+    }
+
+    /** Returns the distance along a ray to the first candidate occluder, at most the given length. */
+    private float cast(float x, float y, float dx, float dy, float length) {
+        float best = length;
+        float inverseX = 1 / dx;
+        float inverseY = 1 / dy;
+        for (int c = 0; c < candidateCount; c++) {
+            int i = candidates[c];
+            // Slab test; a zero direction component gives infinities that fall out right
+            float t1 = (minX[i] - x) * inverseX;
+            float t2 = (maxX[i] - x) * inverseX;
+            float near = Math.min(t1, t2);
+            float far = Math.max(t1, t2);
+            t1 = (minY[i] - y) * inverseY;
+            t2 = (maxY[i] - y) * inverseY;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+            if (near <= far && near >= 0 && near < best) {
+                best = near;
+            }
+        }
+        return best;
+    }
+}
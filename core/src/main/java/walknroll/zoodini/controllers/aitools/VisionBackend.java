@@ -0,0 +1,37 @@
+package walknroll.zoodini.controllers.aitools;
+
+/**
+ * The ways a vision cone can find what blocks its sight; see
+ * {@link walknroll.zoodini.models.GameLevel#setVisionBackend}.
+ */
+public enum VisionBackend {
+    /** A fixed fan of Box2D raycasts against the walls and doors */
+    RAYCAST,
+    /** A fixed fan of rays cut off by shadowcasting the {@link SightGrid} */
+    SHADOWCAST,
+    /** An exact visibility polygon swept from the wall corners, see {@link VisibilitySweep} */
+    SWEEP;
+
+    /**
+     * Parses a property value such as "raycast", "shadowcast" or "sweep".
+     *
+     * @param value    The property value, may be null
+     * @param fallback The backend to use if the value is missing or unknown
+     */
+    public static VisionBackend fromString(String value, VisionBackend fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        switch (value.trim().toUpperCase()) {
+            case "RAYCAST":
+            case "BOX2D":
+                return RAYCAST;
+            case "SHADOWCAST":
+                return SHADOWCAST;
+            case "SWEEP":
+                return SWEEP;
+            default:
+                return fallback;
+        }
+    }
+}
@@ -12,6 +12,7 @@
  */
 package walknroll.zoodini.controllers.screens;
 
+import com.badlogic.gdx.ai.pfa.PathFinder;
 import com.badlogic.gdx.maps.MapLayer;
 import com.badlogic.gdx.maps.MapObject;
 import com.badlogic.gdx.maps.MapObjects;
@@ -55,10 +56,17 @@ import edu.cornell.gdiac.util.PooledList;
 import edu.cornell.gdiac.util.ScreenListener;
 import walknroll.zoodini.GDXRoot;
 import walknroll.zoodini.controllers.GuardAIController;
+import walknroll.zoodini.controllers.GuardSystem;
+import walknroll.zoodini.controllers.GuardTickScheduler;
 import walknroll.zoodini.controllers.InputController;
 import walknroll.zoodini.controllers.PlayerAIController;
 import walknroll.zoodini.controllers.SoundController;
+import walknroll.zoodini.controllers.StimulusBus;
 import walknroll.zoodini.controllers.UIController;
+import walknroll.zoodini.controllers.aitools.FlowField;
+import walknroll.zoodini.controllers.aitools.PathRequestScheduler;
+import walknroll.zoodini.controllers.aitools.PathSmoother;
+import walknroll.zoodini.controllers.aitools.PatrolRouteTable;
 import walknroll.zoodini.controllers.aitools.TileGraph;
 import walknroll.zoodini.controllers.aitools.TileNode;
 import walknroll.zoodini.models.GameLevel;
@@ -125,7 +133,20 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
     /** Mark set to handle more sophisticated collision callbacks */
     protected ObjectSet<Fixture> sensorFixtures;
     /** The current level */
-    private HashMap<Guard, GuardAIController> guardToAIController = new HashMap<>();
+    private GuardSystem guardSystem;
+    /** Number of frames between path cache statistics printouts in debug mode */
+    private static final int PATH_STATS_INTERVAL = 60;
+    private int pathStatsTicks = 0;
+    /** Distance fields towards each avatar, shared by every guard chasing it */
+    private HashMap<PlayableAvatar, FlowField> chaseFields = new HashMap<>();
+    /** Meows, camera alarms and ink hits for the guards to react to */
+    private final StimulusBus stimulusBus = new StimulusBus();
+    /** Guards currently marked as within the aimed meow's radius */
+    private final Array<Guard> meowRadiusGuards = new Array<>();
+    /** Decides which guards run their AI each frame */
+    private GuardTickScheduler guardTickScheduler;
+    /** Runs the AI controllers' path searches within a per-frame time budget */
+    private PathRequestScheduler pathScheduler;
 
     private PlayerAIController playerAIController;
 
@@ -245,7 +266,8 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         ui.setPauseMenuListener(this);
 
 
-        graph = new TileGraph<>(map, true, 1);
+        graph = new TileGraph<>(map, false, TileGraph.readDensity(map, Constants.NAV_DENSITY));
+        guardSystem = new GuardSystem(graph, level.getGuards().size);
         initializeAIControllers();
 
         setComplete(false);
@@ -303,16 +325,19 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         countdown = -1;
         gameLost = false;
 
-        guardToAIController.clear();
-        if (graph != null) {
-            graph.dispose();
+        if (guardSystem != null) {
+            guardSystem.clear();
         }
+        meowRadiusGuards.clear();
+        stimulusBus.clear();
 
         level.populate(directory, map, batch);
         level.getWorld().setContactListener(this);
 
         processedDoors.clear();
-        graph = new TileGraph<>(map,false,1);
+        // The map has not changed, so put the doors back instead of rasterising it again
+        graph.restore();
+        graph.clearMarkedNodes();
 
         ui.dispose();
         ui = new UIController(directory, level, batch);
@@ -459,11 +484,18 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         if (gamePaused) {
             return;
         }
-        processPlayerAction(input, dt);
+        // AI and vision run on the physics tick, once for every step physics takes this frame
+        int ticks = level.getStepsDue(dt);
+        float step = level.getTimeStep();
+        processPlayerAction(input, dt, ticks);
         processNPCAction(dt);
         level.update(dt); // collisions
-        updateVisionCones(dt);
-        updateGuardAI(dt);
+        for (int i = 0; i < ticks; i++) {
+            updateVisionCones(step);
+            updateGuardAI(step, 1);
+        }
+        // Serve this frame's path requests; the controllers pick the results up next tick
+        pathScheduler.update();
         updateCamera(dt);
 
         ui.update(dt);
@@ -520,7 +552,9 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             graph.clearMarkedNodes();
 
             // For each guard, mark their target nodes for display
-            guardToAIController.forEach((guard, controller) -> {
+            for (int i = 0; i < guardSystem.size(); i++) {
+                Guard guard = guardSystem.getGuard(i);
+                GuardAIController controller = guardSystem.getController(i);
                 graph.markWaypoints(guard.getPatrolPoints());
                 Vector2 targetLocation = controller.getNextTargetLocation();
                 if (targetLocation != null) {
@@ -530,7 +564,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
                 graph.markPositionAsTarget(cameraTargetLocation);
                 Vector2 distractedTargetLocation = controller.getDistractPosition();
                 graph.markPositionAsTarget(distractedTargetLocation);
-            });
+            }
 
 
             InputController ic = InputController.getInstance();
@@ -564,9 +598,19 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             playerAIController = null;
         }
 
-        if(guardToAIController != null) {
-            guardToAIController.clear();
-            guardToAIController = null;
+        if(guardSystem != null) {
+            guardSystem.clear();
+            guardSystem = null;
+        }
+
+        if(chaseFields != null) {
+            chaseFields.clear();
+            chaseFields = null;
+        }
+
+        if(pathScheduler != null) {
+            pathScheduler.dispose();
+            pathScheduler = null;
         }
 
         if(sensorFixtures != null) {
@@ -597,12 +641,50 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
 
     public void initializeAIControllers() {
         Array<Guard> guards = level.getGuards();
+        // Close tiles too narrow for the widest agent before any route is planned. There is
+        // one search graph for every agent, so a wide avatar also closes gaps a slim guard
+        // could pass, and the other way round. At the default tile density no agent is
+        // wide enough to close anything; a finer grid with agents of very different sizes
+        // would need a search graph per radius, like the per-radius TileVisibility caches.
+        float agentRadius = 0;
         for (Guard g : guards) {
-            GuardAIController aiController = new GuardAIController(g, level, graph);
-            guardToAIController.put(g, aiController);
+            agentRadius = Math.max(agentRadius, g.getRadius());
+        }
+        if (level.isCatPresent()) {
+            agentRadius = Math.max(agentRadius, level.getCat().getRadius());
+        }
+        if (level.isOctopusPresent()) {
+            agentRadius = Math.max(agentRadius, level.getOctopus().getRadius());
+        }
+        graph.setAgentRadius(agentRadius);
+        level.setVisionBackend(TileGraph.readVisionBackend(map, Constants.VISION_BACKEND), graph);
+        // Patrol routes never change during a level, so solve them all once up front
+        PathFinder<TileNode> routeFinder = graph.createPathFinder();
+        if (pathScheduler != null) {
+            pathScheduler.dispose();
+        }
+        // Search in the background when there is a core to spare, else within the frame budget
+        int workerThreads = Math.min(Constants.PATH_WORKER_THREADS, Runtime.getRuntime().availableProcessors() - 1);
+        pathScheduler = new PathRequestScheduler(graph, Constants.PATH_BUDGET_MICROS, Math.max(workerThreads, 0));
+        chaseFields.clear();
+        if (level.isCatPresent()) {
+            chaseFields.put(level.getCat(), new FlowField(graph));
+        }
+        if (level.isOctopusPresent()) {
+            chaseFields.put(level.getOctopus(), new FlowField(graph));
+        }
+        guardTickScheduler = new GuardTickScheduler(Constants.AI_LOD_RADIUS, Constants.AI_LOD_INTERVAL);
+        guardSystem.clear();
+        for (Guard g : guards) {
+            PatrolRouteTable routes = new PatrolRouteTable(graph, g.getPatrolPoints(), routeFinder,
+                new PathSmoother(graph, g.getRadius()));
+            GuardAIController aiController = new GuardAIController(g, level, graph, routes, chaseFields,
+                pathScheduler);
+            guardSystem.add(g, aiController);
         }
         if (level.isCatPresent() && level.isOctopusPresent()) {
-            playerAIController = new PlayerAIController(level.getOctopus(), level.getCat(), level, graph, followModeActive);
+            playerAIController = new PlayerAIController(level.getOctopus(), level.getCat(), level, graph, followModeActive,
+                pathScheduler);
         }
 
     }
@@ -721,11 +803,11 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             }
 
             if (o1 instanceof InkProjectile && o2 instanceof Guard g) {
-                applyInkEffect(g);
+                onInkHit(g);
             }
 
             if (o2 instanceof InkProjectile && o1 instanceof Guard g) {
-                applyInkEffect(g);
+                onInkHit(g);
             }
 
             if (o1 instanceof InkProjectile || o2 instanceof InkProjectile) {
@@ -860,7 +942,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
                 // The BoxObstacle should have userData pointing to the Guard
                 Object userData = ((BoxObstacle) o2).getUserData();
                 if (userData instanceof Guard) {
-                    applyInkEffect((Guard) userData);
+                    onInkHit((Guard) userData);
                     level.getProjectile().setShouldDestroy(true);
                 }
             }
@@ -868,7 +950,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             if (o2 instanceof InkProjectile && o1 instanceof BoxObstacle) {
                 Object userData = ((BoxObstacle) o1).getUserData();
                 if (userData instanceof Guard) {
-                    applyInkEffect((Guard) userData);
+                    onInkHit((Guard) userData);
                     level.getProjectile().setShouldDestroy(true);
                 }
             }
@@ -1083,13 +1165,19 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         currentLevel = v;
     }
 
-    void updateGuards(Array<Guard> guards) {
-        for (Guard guard : guards) {
-            moveGuard(guard);
+    void updateGuards() {
+        for (int i = 0; i < guardSystem.size(); i++) {
+            moveGuard(i);
         }
     }
 
-    void moveGuard(Guard guard) {
+    /**
+     * Pushes a guard in the direction its AI chose, at the speed of its current state.
+     *
+     * @param id The guard's number in the guard system
+     */
+    void moveGuard(int id) {
+        Guard guard = guardSystem.getGuard(id);
         Vector2 direction = guard.getMovementDirection();
         if (direction == null) { // ideally should never be null.
             DebugPrinter.println("Guard direction is null");
@@ -1102,13 +1190,13 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             float radius = ((WheelObstacle) guard.getObstacle()).getRadius();
             direction.nor().scl((float) (MOVEMENT_SCALE * Math.pow((radius / .5f), 2)));
 
-            if (guard.isMeowed()) {
+            if (guardSystem.isMeowed(id)) {
                 direction.scl(guard.getDistractedForce());
-            } else if (guard.isCameraAlerted()) {
+            } else if (guardSystem.isCameraAlerted(id)) {
                 direction.scl(guard.getAlertedForce());
-            } else if (guard.isAgroed()) {
+            } else if (guardSystem.isAgroed(id)) {
                 direction.scl(guard.getAgroedForce());
-            } else if (guard.isSus()) {
+            } else if (guardSystem.isSus(id)) {
                 direction.scl(guard.getSusForce());
             } else {
                 // if the guard is not in any special state, apply normal force
@@ -1117,18 +1205,18 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
 
             // Regardless of any other guard states, lower speed
             // if the guard is inked
-            if (guard.isInkBlinded()) {
+            if (guardSystem.isInkBlinded(id)) {
                 direction.scl(guard.getBlindedForceScale());
             }
 
-            if (guard.isIdle()){
+            if (guardSystem.isIdle(id)){
                 direction.setZero();
             }
 
             guard.setMovement(direction.x, direction.y);
         }
 
-        if (guard.isLookingAround()){
+        if (guardSystem.isLookingAround(id)){
             // If the guard is looking around, set the movement direction to zero
             guard.setMovement(0, 0);
         }
@@ -1168,19 +1256,10 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
                     }
 
 
-                    for (Guard guard : level.getGuards()) {
-                        float guardToCameraDistance = guard.getPosition()
-                                .dst(((SecurityCamera) entry.key).getPosition());
-                        if (guardToCameraDistance <= ((SecurityCamera) entry.key).getAlarmDistance()) {
-                            guard.setAggroTarget(detectedPlayer);
-                            guard.setCameraAlerted(true);
-
-                            // Optionally set target position directly if needed
-                            if (detectedPlayer != null) {
-                                guard.setTarget(detectedPlayer.getPosition());
-                            }
-                        }
-                    }
+                    // Guards within alarm distance are alerted when the stimuli are delivered
+                    SecurityCamera securityCamera = (SecurityCamera) entry.key;
+                    stimulusBus.publish(StimulusBus.Type.CAMERA_ALARM, securityCamera.getPosition(),
+                        securityCamera.getAlarmDistance(), detectedPlayer);
                 }
             }
         }
@@ -1203,15 +1282,13 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         vec2tmp3.set(0, 0);
         ObjectMap<ZoodiniSprite, VisionCone> visions = level.getVisionConeMap();
 
-        for (ObjectMap.Entry<ZoodiniSprite, VisionCone> entry : visions.entries()) {
-            // Skip if not a guard
-            if (!(entry.key instanceof Guard)) {
+        for (int id = 0; id < guardSystem.size(); id++) {
+            Guard guard = guardSystem.getGuard(id);
+            VisionCone visionCone = visions.get(guard);
+            if (visionCone == null) {
                 continue;
             }
 
-            Guard guard = (Guard) entry.key;
-            VisionCone visionCone = entry.value;
-
             visionCone.setRadius(guard.getViewDistance());
             visionCone.setWideness(guard.getFov());
 
@@ -1220,23 +1297,15 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
 
             // Check if cat is detected
             if (level.isCatPresent() && visionCone.contains(catObs) && !level.getCat().isInvincible()) {
-                guard.setAgroed(true);
-                guard.setAggroTarget(level.getCat());
-                guard.setTarget(level.getCat().getPosition());
                 level.getCat().setUnderVisionCone(true);
-                guard.setSeesPlayer(true);
-                guard.setSeenPlayer(level.getCat());
+                guardSystem.setSeenPlayer(id, level.getCat());
                 // DebugPrinter.println("Guard detected cat: " + guard.getAggroTarget());
             }
 
             // Check if octopus is detected
             else if (level.isOctopusPresent() && visionCone.contains(octObs) && !level.getOctopus().isInvincible()) {
-                guard.setAgroed(true);
-                guard.setAggroTarget(level.getOctopus());
-                guard.setTarget(level.getOctopus().getPosition());
                 level.getOctopus().setUnderVisionCone(true);
-                guard.setSeesPlayer(true);
-                guard.setSeenPlayer(level.getOctopus());
+                guardSystem.setSeenPlayer(id, level.getOctopus());
                 // DebugPrinter.println("Guard detected octopus: " + guard.getAggroTarget());
             }
             // No player detected
@@ -1248,11 +1317,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
                 if (level.isCatPresent()) {
                     level.getCat().setUnderVisionCone(false);
                 }
-                guard.setSeesPlayer(false);
-                guard.setSeenPlayer(null);
-                if (!guard.isCameraAlerted()) {
-                    guard.setAgroed(false);
-                }
+                guardSystem.setSeenPlayer(id, null);
             }
         }
     }
@@ -1260,7 +1325,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
     /**
      * Applies movement forces to the avatar and change firing states.
      */
-    private void processPlayerAction(InputController input, float dt) {
+    private void processPlayerAction(InputController input, float dt, int ticks) {
         vec3tmp.setZero();
         vec2tmp.setZero();
 
@@ -1281,7 +1346,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             handleOctopusAbility(input, (Octopus) level.getInactiveAvatar(), true);
         } else if (playerAIController != null) {
             handleFollowModeToggle(input);
-            updatePlayerAI(dt);
+            updatePlayerAI(ticks);
         }
 
         if (level.isOctopusPresent()) {
@@ -1301,28 +1366,29 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
                 float meowRadius = cat.getAbilityRange();
                 Vector2 catPosition = cat.getPosition();
 
-                // Check each guard to see if they're in meow radius
-                for (Guard guard : level.getGuards()) {
-                    float distance = guard.getPosition().dst(catPosition);
-                    if (distance <= meowRadius) {
-                        DebugPrinter.println("Guard in meow radius: ");
-                        guard.setInMeowRadius(true);
-                    } else {
-                        guard.setInMeowRadius(false);
-                    }
+                // Mark the guards in meow radius, unmarking those that left it
+                for (Guard guard : meowRadiusGuards) {
+                    guard.setInMeowRadius(false);
+                }
+                meowRadiusGuards.clear();
+                level.getEntitiesInRadius(catPosition, meowRadius, Guard.class, meowRadiusGuards);
+                for (Guard guard : meowRadiusGuards) {
+                    guard.setInMeowRadius(true);
                 }
             }
 
             if (cat.isCurrentlyAiming() && !input.isAbilityHeld()) {
                 DebugPrinter.println("Cat ability fired");
                 cat.setDidFire(true);
+                stimulusBus.publish(StimulusBus.Type.MEOW, cat.getPosition(), cat.getAbilityRange(), cat);
                 cat.setCurrentlyAiming(false);
                 soundController.playCatMeow();
 
                 // Clear the meow radius indicators when cat actually meows
-                for (Guard guard : level.getGuards()) {
+                for (Guard guard : meowRadiusGuards) {
                     guard.setInMeowRadius(false);
                 }
+                meowRadiusGuards.clear();
             }
 
             else {
@@ -1415,8 +1481,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             inkProjectile.setShouldDestroy(true);
         }
 
-        Array<Guard> guards = level.getGuards();
-        updateGuards(guards);
+        updateGuards();
 
         for (Door door : level.getDoors()) {
             if (!door.isLocked() && !processedDoors.contains(door)) {
@@ -1424,21 +1489,9 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
                 BoxObstacle box = (BoxObstacle) door.getObstacle();
                 float doorX = door.getObstacle().getX() - box.getWidth() / 2f;
                 float doorY = door.getObstacle().getY() - box.getHeight() / 2f;
-                int startX = (int)Math.floor(doorX);
-                int startY = (int)Math.floor(doorY);
-                int endX = (int)Math.ceil(doorX + box.getWidth());
-                int endY = (int)Math.ceil(doorY + box.getHeight());
-
-                for (int x = startX; x < endX; x++) {
-                    for (int y = startY; y < endY; y++) {
-                        TileNode n = graph.getNode(x,y);
-                        if (n != null) {
-                            n.isObstacle = false;
-                        }
-                    }
-                }
 
-                graph.addConnections();
+                // Only the door's tiles and their neighbours need rebuilding
+                graph.setObstacleArea(doorX, doorY, box.getWidth(), box.getHeight(), false);
 
                 door.getObstacle().setSensor(true);
             }
@@ -1457,11 +1510,54 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         }
     }
 
-    private void updateGuardAI(float dt) {
-        guardToAIController.forEach((guard, controller) -> {
-            controller.update(dt);
-            guard.think(controller.getMovementDirection(), controller.getNextTargetLocation());
-        });
+    private void updateGuardAI(float dt, int ticks) {
+        if (GameSettings.getInstance().isCoopEnabled() && level.isCatPresent() && level.isOctopusPresent()) {
+            guardSystem.update(dt, ticks, level, stimulusBus, guardTickScheduler, cameraLeft, cameraRight);
+        } else {
+            guardSystem.update(dt, ticks, level, stimulusBus, guardTickScheduler, camera);
+        }
+        if (Constants.DEBUG && ++pathStatsTicks >= PATH_STATS_INTERVAL) {
+            pathStatsTicks = 0;
+            printPathCacheStats();
+        }
+    }
+
+    /**
+     * Prints the combined path cache hit/miss counters of every AI controller.
+     * A miss means a new search was queued with the path scheduler, using the level's
+     * pathfinder (JPS+ unless the map picks another). Chasing guards mostly follow flow
+     * fields instead, so they rarely show up here.
+     */
+    private void printPathCacheStats() {
+        long hits = 0;
+        long misses = 0;
+        for (int i = 0; i < guardSystem.size(); i++) {
+            GuardAIController controller = guardSystem.getController(i);
+            hits += controller.getPathCache().getHits();
+            misses += controller.getPathCache().getMisses();
+        }
+        if (playerAIController != null) {
+            hits += playerAIController.getPathCache().getHits();
+            misses += playerAIController.getPathCache().getMisses();
+        }
+        long rebuilds = 0;
+        for (FlowField field : chaseFields.values()) {
+            rebuilds += field.getRebuilds();
+        }
+        long total = hits + misses;
+        DebugPrinter.println("Path cache: " + hits + " hits, " + misses + " misses ("
+            + (total == 0 ? 0 : (100 * hits / total)) + "% hit rate), "
+            + rebuilds + " chase field rebuilds");
+        DebugPrinter.println("Path scheduler: " + pathScheduler.getServed() + " served, "
+            + pathScheduler.getOutstanding() + " queued, last frame "
+            + pathScheduler.getLastRunNanos() / 1000 + "us, peak "
+            + pathScheduler.getPeakRunNanos() / 1000 + "us"
+            + (pathScheduler.isAsync() ? " on workers, " + pathScheduler.getDiscarded() + " stale"
+                : " of " + pathScheduler.getBudgetMicros() + "us"));
+        DebugPrinter.println("Guard AI: " + guardTickScheduler.getReducedCount() + " of "
+            + guardSystem.size() + " guards at reduced rate");
+        DebugPrinter.println("Vision cones: " + level.getConesRebuilt() + " rebuilt, "
+            + level.getConesCached() + " reused, " + level.getConesSkipped() + " skipped");
     }
 
     private void resetAvatarState(PlayableAvatar avatar) {
@@ -1471,9 +1567,10 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         // Clear all guards' meow radius indicators when switching away from cat
         if (avatar.getAvatarType() == AvatarType.CAT) {
             // Clear the meow radius indicators for all guards
-            for (Guard guard : level.getGuards()) {
+            for (Guard guard : meowRadiusGuards) {
                 guard.setInMeowRadius(false);
             }
+            meowRadiusGuards.clear();
         }
     }
 
@@ -1545,11 +1642,11 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
 
             // Determine which avatar is which
             if (level.getAvatar().getAvatarType() == AvatarType.CAT) {
-                catPosition = level.getAvatar().getPosition();
-                octopusPosition = level.getInactiveAvatar().getPosition();
+                catPosition = level.getAvatar().getDrawPosition();
+                octopusPosition = level.getInactiveAvatar().getDrawPosition();
             } else {
-                catPosition = level.getInactiveAvatar().getPosition();
-                octopusPosition = level.getAvatar().getPosition();
+                catPosition = level.getInactiveAvatar().getDrawPosition();
+                octopusPosition = level.getAvatar().getDrawPosition();
             }
 
             // Apply aiming zoom if needed
@@ -1618,7 +1715,7 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
             cameraTargetPosition.set(level.getExit().getObstacle().getPosition());
             camera.zoom = Math.max(0.2f, camera.zoom - 0.02f);
         } else {
-            cameraTargetPosition.set(avatar.getPosition());
+            cameraTargetPosition.set(avatar.getDrawPosition());
         }
         // Get viewport dimensions in world units
         float viewWidth = camera.viewportWidth / level.getTileSize();
@@ -1662,29 +1759,18 @@ public class GameScene implements Screen, ContactListener, UIController.PauseMen
         camera.update();
     }
 
-    private void applyInkEffect(Guard guard) {
-        DebugPrinter.println("Guard hit by ink!");
-        // Set ink effect duration (in seconds)
-        final float INK_EFFECT_DURATION = 5.0f;
-
-        // Store original vision parameters and apply reduction
-        guard.setInkBlinded(true);
-        guard.setInkBlindTimer(INK_EFFECT_DURATION);
-
-        final float MIN_VIEW_DISTANCE = 2f;
-        final float MIN_FOV = 40f;
-
-        // Reduce the view distance and FOV angle with minimum thresholds
-        float reducedViewDistance = Math.max(guard.getViewDistance() * 0.6f, MIN_VIEW_DISTANCE);
-        float reducedFov = Math.max(guard.getFov() * 0.6f, MIN_FOV);
-        // Reduce the view distance and FOV angle
-        guard.setTempViewDistance(reducedViewDistance); // 60% reduction
-        guard.setTempFov(reducedFov); // 60% reduction
+    private void onInkHit(Guard guard) {
+        // The guard's controller blinds it when the stimuli are delivered
+        stimulusBus.publish(StimulusBus.Type.INK_HIT, guard, level.getOctopus());
     }
 
-    private void updatePlayerAI(float dt) {
+    private void updatePlayerAI(int ticks) {
+        if (ticks == 0) {
+            // The follower keeps its course until the next physics tick
+            return;
+        }
         if (followModeActive && level.getInactiveAvatar() != null && level.getAvatar() != null) {
-            playerAIController.update(dt);
+            playerAIController.update(ticks * level.getTimeStep(), ticks);
             float verticalForce = playerAIController.getVerticalMovement();
             float horizontalForce = playerAIController.getHorizontalMovement();
 
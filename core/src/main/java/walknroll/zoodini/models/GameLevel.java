@@ -39,6 +39,7 @@ import com.badlogic.gdx.physics.box2d.Filter;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectIntMap;
 import com.badlogic.gdx.utils.ObjectMap;
 
 import edu.cornell.gdiac.assets.AssetDirectory;
@@ -52,6 +53,10 @@ import edu.cornell.gdiac.physics2.Obstacle;
 import edu.cornell.gdiac.physics2.ObstacleSprite;
 import edu.cornell.gdiac.util.PooledList;
 import walknroll.zoodini.controllers.UIController;
+import walknroll.zoodini.controllers.aitools.ShadowcastVision;
+import walknroll.zoodini.controllers.aitools.TileGraph;
+import walknroll.zoodini.controllers.aitools.VisibilitySweep;
+import walknroll.zoodini.controllers.aitools.VisionBackend;
 import walknroll.zoodini.models.entities.Avatar;
 import walknroll.zoodini.models.entities.Cat;
 import walknroll.zoodini.models.entities.Guard;
@@ -66,6 +71,7 @@ import walknroll.zoodini.models.nonentities.Vent;
 import walknroll.zoodini.utils.Constants;
 import walknroll.zoodini.utils.DebugPrinter;
 import walknroll.zoodini.utils.GameSettings;
+import walknroll.zoodini.utils.SpatialGrid;
 import walknroll.zoodini.utils.VisionCone;
 import walknroll.zoodini.utils.ZoodiniSprite;
 import walknroll.zoodini.utils.animation.AnimationState;
@@ -175,6 +181,26 @@ public class GameLevel {
 
     private PooledList<Door> doors = new PooledList<>();
 
+    /** Wall and door rectangles, for vision cones built by sweeping */
+    private VisibilitySweep visibilitySweep = new VisibilitySweep();
+    /** Number of each door's rectangle in the sweep */
+    private ObjectIntMap<Door> doorOccluders = new ObjectIntMap<>();
+    /** Cameras the level has been drawn with since the vision cones were last updated */
+    private final Array<Camera> viewCameras = new Array<>();
+    /** Vision cones rebuilt, reused unchanged, and left stale since the level was populated */
+    private long conesRebuilt;
+    private long conesCached;
+    private long conesSkipped;
+
+    /** Width of a cell of the entity grid, in world units */
+    private static final float ENTITY_CELL_SIZE = 4f;
+    /** Guards, cameras, vents, keys and avatars, by position */
+    private SpatialGrid<ZoodiniSprite> entityGrid;
+    /** Longest view distance of any guard or camera, in world units */
+    private float maxViewDistance;
+    /** Scratch array for entity grid queries */
+    private final Array<ZoodiniSprite> entityQuery = new Array<>();
+
     /** Minimap disabled? */
     private boolean minimapDisabled = false;
 
@@ -282,6 +308,25 @@ public class GameLevel {
         substitutor = new StringSubstitutor(valuesMap);
     }
 
+    /**
+     * Chooses how every vision cone finds what blocks its sight. See
+     * {@link VisionCone#setShadowcaster} and {@link VisionCone#setSweep}.
+     *
+     * @param backend The way to find walls
+     * @param graph   The level's navigation graph, whose sight grid the shadowcaster reads
+     */
+    public void setVisionBackend(VisionBackend backend, TileGraph<?> graph) {
+        // The cones are updated one after another, so they can share one shadowcaster or sweep
+        ShadowcastVision shadowcaster = backend == VisionBackend.SHADOWCAST
+            ? new ShadowcastVision(graph.getSightGrid(), graph.getDensity()) : null;
+        for (VisionCone cone : visions.values()) {
+            cone.setShadowcaster(shadowcaster);
+            if (backend == VisionBackend.SWEEP) {
+                cone.setSweep(visibilitySweep);
+            }
+        }
+    }
+
     public ObjectMap<ZoodiniSprite, VisionCone> getVisionConeMap() {
         return visions;
     }
@@ -302,6 +347,10 @@ public class GameLevel {
         maxTimePerFrame = timeStep * maxSteps;
 
         world = new World(Vector2.Zero, false);
+        visibilitySweep = new VisibilitySweep();
+        conesRebuilt = 0;
+        conesCached = 0;
+        conesSkipped = 0;
 
         mapRenderer = new OrthogonalTiledMapRenderer(map, batch);
 
@@ -416,6 +465,9 @@ public class GameLevel {
                 Door door = new Door(directory, properties, entityConstants.get("door"), units);
                 doors.add(door);
                 activate(door);
+                BoxObstacle box = (BoxObstacle) door.getObstacle();
+                doorOccluders.put(door, visibilitySweep.add(box.getX() - box.getWidth() / 2,
+                    box.getY() - box.getHeight() / 2, box.getWidth(), box.getHeight()));
             } else if ("Key".equalsIgnoreCase(type)) {
                 Key key = new Key(directory, properties, entityConstants.get("key"), units);
                 keys.add(key);
@@ -452,6 +504,7 @@ public class GameLevel {
         }
 
         initializeVisionCones(entityConstants.get("visioncone"));
+        initializeEntityGrid();
         // initializeLOSController(entityConstants.get("walls"));
 
         // Initialize an ink projectile (but do not add it to the physics world, we only
@@ -488,11 +541,16 @@ public class GameLevel {
         }
 
         visions.clear();
+        if (entityGrid != null) {
+            entityGrid.clear();
+            entityGrid = null;
+        }
         guards.clear();
         securityCameras.clear();
         objects.clear();
         sprites.clear();
         doors.clear();
+        doorOccluders.clear();
         textObjects.clear();
         keys.clear();
         mapRenderer.dispose();
@@ -510,10 +568,16 @@ public class GameLevel {
      * because
      * of how tightly coupled everything is.
      *
-     * @param dt the time passed since the last frame
+     * Models are only updated on frames where physics steps, with the time of the steps
+     * taken rather than of the frame. The avatars, guards and ink are then placed in
+     * between their last two steps for drawing (see {@link ZoodiniSprite#interpolate}).
+     *
+     * @param frameDt the time passed since the last frame
      */
-    public void update(float dt) {
-        if (fixedStep(dt)) {
+    public void update(float frameDt) {
+        int steps = fixedStep(frameDt);
+        if (steps > 0) {
+            float dt = steps * timeStep;
 
             updateFlipSprite(getAvatar());
             PlayableAvatar inactiveAvatar = getInactiveAvatar();
@@ -535,7 +599,6 @@ public class GameLevel {
 
             for (Guard g : guards) {
                 g.update(dt);
-                g.updateInkBlindTimer(dt);
                 updateFlipGuardSprite(g);
             }
 
@@ -543,9 +606,16 @@ public class GameLevel {
                 c.update(dt);
             }
 
-            for (VisionCone vc : visions.values()) {
-                vc.update(world);
+            // Unlocked doors no longer block sight, so cones that reach them must look again
+            for (Door door : doors) {
+                if (visibilitySweep.setEnabled(doorOccluders.get(door, -1), door.isLocked())) {
+                    invalidateConesNear(door);
+                }
             }
+            for (ObjectMap.Entry<ZoodiniSprite, VisionCone> entry : visions.entries()) {
+                updateVisionCone(entry.key, entry.value);
+            }
+            viewCameras.clear();
 
             for (Door door : doors) {
                 door.update(dt);
@@ -555,70 +625,161 @@ public class GameLevel {
                 key.update(dt);
             }
 
+            updateEntityGrid();
+
             exit.update(dt);
 
-            // checkPlayerInVisionCones();
             updateGameTextPosition(dt);
         }
+        interpolateSprites(getStepAlpha());
     }
 
     /**
-     * Checks if the player is in the vision cones of any guards or security cameras
-     * and updates their states accordingly.
+     * Returns how many physics steps the next {@link #update} will take for a frame of
+     * the given length. Logic that runs on the physics tick asks this before the update.
+     *
+     * @param dt the time passed since the last frame
      */
-    public void checkPlayerInVisionCones() {
-        for (ObjectMap.Entry<ZoodiniSprite, VisionCone> entry : visions.entries()) {
-            VisionCone v = entry.value;
-            ZoodiniSprite key = entry.key;
-            v.update(world);
-            if (v.contains(avatarCat.getObstacle())) {
-                if (key instanceof Guard) {
-                    ((Guard) key).setTarget(
-                        avatarCat.getPosition()); // TODO: this line might not be needed
-                    ((Guard) key).setAgroed(true);
-                    ((Guard) key).setAggroTarget(avatarCat);
-                } else if (key instanceof SecurityCamera) {
-                    SecurityCamera camera = (SecurityCamera) key;
-                    if (!camera.isDisabled()) {
-                        // Alert all guards when camera sees either player
-                        for (Guard guard : getGuards()) {
-                            if (guard != null) {
-                                guard.setAggroTarget(avatarCat);
-                                guard.setCameraAlerted(true);
-                            }
-                        }
-                    }
-                }
-            } else if (v.contains(avatarOctopus.getObstacle())) {
-                if (key instanceof Guard) {
-                    ((Guard) key).setTarget(
-                        avatarOctopus.getPosition()); // TODO: this line might not be needed
-                    ((Guard) key).setAgroed(true);
-                    ((Guard) key).setAggroTarget(avatarOctopus);
-                    // DebugPrinter.println("In guard vision cone " + ((Guard)
-                    // key).getAggroTarget());
-                } else if (key instanceof SecurityCamera) {
-                    SecurityCamera camera = (SecurityCamera) key;
-                    if (!camera.isDisabled()) {
-                        // Alert all guards when camera sees either player
-                        for (Guard guard : guards) {
-                            if (guard != null) {
-                                guard.setTarget(avatarOctopus.getPosition());
-                                guard.setCameraAlerted(true);
-                            }
-                        }
-                    }
-                }
-            } else if (!v.contains(avatarCat.getObstacle())) {
-                if (key instanceof Guard) {
-                    ((Guard) key).setAgroed(false);
-                }
-            } else if (!v.contains(avatarOctopus.getObstacle())) {
-                if (key instanceof Guard) {
-                    ((Guard) key).setAgroed(false);
+    public int getStepsDue(float dt) {
+        if (world == null) {
+            return 0;
+        }
+        // Same arithmetic as fixedStep, so that the count always matches
+        float timeLeft = Math.min(physicsTimeLeft + dt, maxTimePerFrame);
+        int steps = 0;
+        while (timeLeft >= timeStep) {
+            timeLeft -= timeStep;
+            steps++;
+        }
+        return steps;
+    }
+
+    /** Returns the length of a physics step, in seconds. */
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * Returns how far the time drawn is past the last physics step, as a fraction of a
+     * step between 0 and 1.
+     */
+    public float getStepAlpha() {
+        return Math.min(physicsTimeLeft / timeStep, 1.0f);
+    }
+
+    /** Remembers where the moving sprites are before a physics step. */
+    private void savePreviousPositions() {
+        if (avatarCat != null) {
+            avatarCat.savePreviousPosition();
+        }
+        if (avatarOctopus != null) {
+            avatarOctopus.savePreviousPosition();
+        }
+        if (inkProjectile != null) {
+            inkProjectile.savePreviousPosition();
+        }
+        for (Guard g : guards) {
+            g.savePreviousPosition();
+        }
+    }
+
+    /** Places the moving sprites between their last two physics steps for drawing. */
+    private void interpolateSprites(float alpha) {
+        if (avatarCat != null) {
+            avatarCat.interpolate(alpha);
+        }
+        if (avatarOctopus != null) {
+            avatarOctopus.interpolate(alpha);
+        }
+        if (inkProjectile != null) {
+            inkProjectile.interpolate(alpha);
+        }
+        for (Guard g : guards) {
+            g.interpolate(alpha);
+        }
+    }
+
+    /**
+     * Rebuilds a vision cone if anything can use it.
+     *
+     * Only walls and doors block sight, so a cone that has not moved or turned stays the
+     * same until a door in reach opens. Cameras never move, so their cones are built once
+     * and again only after that, or after the camera comes back from being disabled. A
+     * guard's cone is left stale while neither avatar is in reach of it and it is not
+     * drawn on screen; a stale cone contains nothing.
+     */
+    private void updateVisionCone(ZoodiniSprite owner, VisionCone cone) {
+        if (owner instanceof SecurityCamera camera && camera.isDisabled()) {
+            // Nothing looks through a disabled camera; build afresh once it is back
+            cone.invalidate();
+            conesSkipped++;
+            return;
+        }
+        if (!(owner instanceof SecurityCamera) && !isConeNeeded(owner.getObstacle().getPosition(), cone)) {
+            cone.invalidate();
+            conesSkipped++;
+            return;
+        }
+        if (cone.isCurrent()) {
+            conesCached++;
+            return;
+        }
+        cone.update(world);
+        conesRebuilt++;
+    }
+
+    /** Returns whether an avatar may be in reach of a cone, or the cone is drawn on screen. */
+    private boolean isConeNeeded(Vector2 origin, VisionCone cone) {
+        float radius = cone.getRadius();
+        if (catPresent && origin.dst2(avatarCat.getPosition())
+            <= (radius + avatarCat.getRadius()) * (radius + avatarCat.getRadius())) {
+            return true;
+        }
+        if (octopusPresent && origin.dst2(avatarOctopus.getPosition())
+            <= (radius + avatarOctopus.getRadius()) * (radius + avatarOctopus.getRadius())) {
+            return true;
+        }
+        if (cone.isVisible()) {
+            // The cameras draw in pixels, not world units
+            float tileSize = getTileSize();
+            for (Camera camera : viewCameras) {
+                if (camera.frustum.sphereInFrustum(origin.x * tileSize, origin.y * tileSize, 0,
+                    radius * tileSize)) {
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    /** Marks every cone that can reach the given door as out of date. */
+    private void invalidateConesNear(Door door) {
+        BoxObstacle box = (BoxObstacle) door.getObstacle();
+        for (ObjectMap.Entry<ZoodiniSprite, VisionCone> entry : visions.entries()) {
+            Vector2 origin = entry.key.getObstacle().getPosition();
+            // Distance from the cone's origin to the nearest point of the door
+            float dx = Math.max(Math.abs(origin.x - box.getX()) - box.getWidth() / 2, 0);
+            float dy = Math.max(Math.abs(origin.y - box.getY()) - box.getHeight() / 2, 0);
+            float radius = entry.value.getRadius();
+            if (dx * dx + dy * dy <= radius * radius) {
+                entry.value.invalidate();
+            }
+        }
+    }
+
+    /** Returns the number of vision cone rebuilds since the level was created. */
+    public long getConesRebuilt() {
+        return conesRebuilt;
+    }
+
+    /** Returns the number of times a cone that could not have changed was reused instead of rebuilt. */
+    public long getConesCached() {
+        return conesCached;
+    }
+
+    /** Returns the number of times a cone nothing could use was left stale instead of rebuilt. */
+    public long getConesSkipped() {
+        return conesSkipped;
     }
 
     /**
@@ -631,6 +792,9 @@ public class GameLevel {
      * @param camera the drawing camera
      */
     public void draw(SpriteBatch batch, Camera camera) {
+        if (!viewCameras.contains(camera, true)) {
+            viewCameras.add(camera);
+        }
         sprites.sort(ZoodiniSprite.Comparison);
 
         // Draw the sprites first (will be hidden by shadows)
@@ -702,6 +866,10 @@ public class GameLevel {
         batch.setColor(Color.WHITE);
         for (ObjectMap.Entry<ZoodiniSprite, VisionCone> entry : visions.entries()) {
             if (entry.key instanceof Guard) {
+                // Follow the guard to where it is drawn between physics steps
+                Vector2 drawn = entry.key.getDrawPosition();
+                Vector2 actual = entry.key.getObstacle().getPosition();
+                entry.value.setDrawOffset(drawn.x - actual.x, drawn.y - actual.y);
                 entry.value.draw(batch, camera);
             }
         }
@@ -797,6 +965,34 @@ public class GameLevel {
 
     }
 
+    /**
+     * Appends the guards, cameras, vents, keys or avatars of the given type whose position
+     * is within a radius of a point to out. Positions are as of the last physics step.
+     *
+     * @param centre The centre of the circle, in world units
+     * @param radius The radius of the circle, in world units
+     * @param type   The type of entity to find, e.g. Guard.class
+     * @param out    The array to append the entities to
+     * @return out, for chaining
+     */
+    public <E extends ZoodiniSprite> Array<E> getEntitiesInRadius(Vector2 centre, float radius, Class<E> type,
+                                                                   Array<E> out) {
+        return entityGrid.queryRadius(centre.x, centre.y, radius, type, out);
+    }
+
+    /**
+     * Appends the guards, cameras, vents, keys or avatars of the given type whose position
+     * is inside a box to out. Positions are as of the last physics step.
+     *
+     * @param area The box, in world units
+     * @param type The type of entity to find, e.g. Vent.class
+     * @param out  The array to append the entities to
+     * @return out, for chaining
+     */
+    public <E extends ZoodiniSprite> Array<E> getEntitiesInArea(Rectangle area, Class<E> type, Array<E> out) {
+        return entityGrid.queryRect(area, type, out);
+    }
+
     public boolean isInactiveAvatarInDanger() {
         if (catActive && octopusPresent) {
             return isInDanger(avatarOctopus);
@@ -1080,6 +1276,8 @@ public class GameLevel {
 
                 objects.add(obstacle);
                 obstacle.activatePhysics(world);
+                visibilitySweep.add(rectangle.x / units, rectangle.y / units,
+                    rectangle.width / units, rectangle.height / units);
             } else if (wall instanceof EllipseMapObject e) {
                 Ellipse ellipse = e.getEllipse();
             } else if (wall instanceof PolygonMapObject poly) {
@@ -1095,39 +1293,82 @@ public class GameLevel {
      * http://gafferongames.com/game-physics/fix-your-timestep/
      *
      * @param dt the time passed since the last frame
+     * @return the number of steps taken
      */
-    private boolean fixedStep(float dt) {
+    private int fixedStep(float dt) {
         if (world == null)
-            return false;
+            return 0;
 
         physicsTimeLeft += dt;
         if (physicsTimeLeft > maxTimePerFrame) {
             physicsTimeLeft = maxTimePerFrame;
         }
 
-        boolean stepped = false;
+        int steps = 0;
         while (physicsTimeLeft >= timeStep) {
+            savePreviousPositions();
             world.step(timeStep, WORLD_VELOC, WORLD_POSIT);
             physicsTimeLeft -= timeStep;
-            stepped = true;
+            steps++;
         }
-        return stepped;
+        return steps;
     }
 
     private boolean isInDanger(PlayableAvatar avatar) {
         if (avatar.isInvincible())
             return false;
-        for (ObjectMap.Entry<ZoodiniSprite, VisionCone> entry : visions.entries()) {
-            if (entry.key instanceof SecurityCamera && ((SecurityCamera) entry.key).isDisabled()) {
+        // Only cones whose owner is within view distance can reach the avatar
+        entityQuery.clear();
+        getEntitiesInRadius(avatar.getPosition(), maxViewDistance + avatar.getRadius(), ZoodiniSprite.class,
+            entityQuery);
+        for (ZoodiniSprite owner : entityQuery) {
+            VisionCone cone = visions.get(owner);
+            if (cone == null || owner instanceof SecurityCamera && ((SecurityCamera) owner).isDisabled()) {
                 continue;
             }
-            if (entry.value.contains(avatar.getObstacle())) {
+            if (cone.contains(avatar.getObstacle())) {
                 return true;
             }
         }
         return false;
     }
 
+    private void initializeEntityGrid() {
+        entityGrid = new SpatialGrid<>(bounds, ENTITY_CELL_SIZE);
+        // Cameras and vents never move, so they are only filed once
+        for (SecurityCamera cam : securityCameras) {
+            entityGrid.update(cam, cam.getPosition().x, cam.getPosition().y);
+        }
+        for (Vent vent : vents) {
+            Vector2 position = vent.getObstacle().getPosition();
+            entityGrid.update(vent, position.x, position.y);
+        }
+        updateEntityGrid();
+    }
+
+    /** Files the entities that can move under their current positions. */
+    private void updateEntityGrid() {
+        float viewDistance = 0;
+        if (avatarCat != null) {
+            entityGrid.update(avatarCat, avatarCat.getPosition().x, avatarCat.getPosition().y);
+        }
+        if (avatarOctopus != null) {
+            entityGrid.update(avatarOctopus, avatarOctopus.getPosition().x, avatarOctopus.getPosition().y);
+        }
+        for (Guard g : guards) {
+            entityGrid.update(g, g.getPosition().x, g.getPosition().y);
+            viewDistance = Math.max(viewDistance, g.getViewDistance());
+        }
+        for (Key key : keys) {
+            Vector2 position = key.getObstacle().getPosition();
+            entityGrid.update(key, position.x, position.y);
+        }
+        for (SecurityCamera cam : securityCameras) {
+            viewDistance = Math.max(viewDistance, cam.getViewDistance());
+        }
+        maxViewDistance = viewDistance;
+    }
+
     private void updateFlipSprite(Avatar avatar) {
         // flips the sprite if the avatar is moving left
         if (!avatar.isFlipped() && avatar.getMovement().x < 0.0f
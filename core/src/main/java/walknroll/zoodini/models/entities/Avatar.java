@@ -84,6 +84,15 @@ public class Avatar extends ZoodiniSprite {
         obstacle.setPosition(pos);
     }
 
+	/**
+	 * Returns the radius of this avatar's physics body.
+	 *
+	 * @return the radius of this avatar's physics body.
+	 */
+	public float getRadius() {
+		return ((WheelObstacle) obstacle).getRadius();
+	}
+
 
 	/** Sets angle in radians */
 	public void setAngle(float angle) {
@@ -363,8 +372,8 @@ public class Avatar extends ZoodiniSprite {
 	@Override
 	public void draw(SpriteBatch batch) {
 		if (this.obstacle != null && this.mesh != null) {
-			float x = this.obstacle.getX();
-			float y = this.obstacle.getY();
+			float x = getDrawPosition().x;
+			float y = getDrawPosition().y;
 			float a = this.obstacle.getAngle();
 			float u = this.obstacle.getPhysicsUnits();
 
@@ -54,19 +54,9 @@ public class Guard extends Enemy {
 
     private final float fov;
     private final float viewDistance;
-    private boolean isChasing;
+    /** Whether the guard stands still looking left and right; set by the guard's AI */
     private boolean isLookingAround;
 
-    private boolean meowed;
-    private int chaseTimer;
-    private boolean cameraAlerted;
-
-    private PlayableAvatar aggroTarget;
-    private boolean seesPlayer;
-    private PlayableAvatar seenPlayer;
-
-    /** The position that this guard should move to */
-    Vector2 target = null;
     Vector2 movementDirection = null;
     Vector2 targetPosition = null;
     /** Direction guard is currently facing */
@@ -79,16 +69,12 @@ public class Guard extends Enemy {
     private int currentPatrolIndex = 0;
 
     private final AnimationController suspsicionMeter;
-    private float susLevel;
-
-    private final float susThreshold;
-    private float maxSusLevel;
-    private final float DEAGRRO_PERIOD = 60F;
-
-    private final float ALERT_DEAGRRO_PERIOD = 300F;
-    private float deAggroTimer;
+    /** How full the suspicion meter is, from 0 to 1; set by the guard's AI */
+    private float suspicion;
+    /** Whether the meter shows that the guard is following up a meow; set by the guard's AI */
+    private boolean curious;
+    /** Whether the guard is blinded by ink; the AI keeps the time it has left */
     private boolean inkBlinded = false;
-    private float inkBlindTimer = 0;
     private float tempViewDistance;
     private float tempFov;
 
@@ -102,6 +88,7 @@ public class Guard extends Enemy {
     private final float distractedForce;
     private final float blindedForceScale;
 
+    /** Whether the guard stands at its single post; set by the guard's AI */
     private boolean isIdle = false;
     private final float idleAngle;
 
@@ -166,17 +153,10 @@ public class Guard extends Enemy {
         setAngle(MathUtils.degreesToRadians * idleAngle);
         animationController.setState(IDLE_NORTH);
         currentPatrolIndex = 0;
-        cameraAlerted = false;
-        isChasing = false;
         isLookingAround = false;
-        meowed = false;
-        chaseTimer = 0;
         AnimationState state = AnimationState.SUSPICION_METER;
         suspsicionMeter = new AnimationController(state);
         viewDistance = constants.getFloat("viewDistance");
-        susThreshold = 5F;
-        maxSusLevel = 100F;
-        seesPlayer = false;
 
         agroedForce = constants.getFloat("agroedForce");
         alertedForce = constants.getFloat("alertedForce");
@@ -221,68 +201,29 @@ public class Guard extends Enemy {
     }
 
 
-    public void setMaxSusLevel() {
-        this.susLevel = this.maxSusLevel;
-    }
-
-    public void setMinSusLevel() {
-        this.susLevel = 0.0F;
-    }
-
-    public float getSusLevel() {
-        return susLevel;
-    }
-
-
-    public void deltaSusLevel(float delta) {
-        this.susLevel = MathUtils.clamp(susLevel + delta, 0.0F, maxSusLevel);
-    }
-
-    public void setSusLevel(float susLevel) {
-        this.susLevel = MathUtils.clamp(susLevel, 0.0F, maxSusLevel);
-    }
-
-    public boolean isMaxSusLevel() {
-        return susLevel == maxSusLevel;
-    }
-
-    public float getMaxSusLevel() {
-        return maxSusLevel;
-    }
-
-    public float getSusThreshold() {
-        return susThreshold;
+    /** Returns how full the suspicion meter is, from 0 to 1. */
+    public float getSuspicion() {
+        return suspicion;
     }
 
     /**
-     * Check if the guard is "suspicious" of the player.
-     * A guard is suspicious if their susLevel is greater than or equal to
-     * the susThreshold.
+     * Sets how full the suspicion meter is. The suspicion itself is kept by the guard's
+     * AI (see GuardAIController), which hands it over after every update.
+     *
+     * @param suspicion The fraction of the maximum suspicion, from 0 to 1
      */
-    public boolean isSus() {
-        return susLevel >= susThreshold;
+    public void setSuspicion(float suspicion) {
+        this.suspicion = MathUtils.clamp(suspicion, 0.0F, 1.0F);
     }
 
-    public boolean isMinSusLevel() {
-        return susLevel == 0.0F;
+    /** Returns whether the meter shows that the guard is following up a meow. */
+    public boolean isCurious() {
+        return curious;
     }
 
-    public boolean checkDeAggroed() {
-        return deAggroTimer <= 0;
-    }
-
-    public void deltaDeAggroTimer(float delta) {
-        this.deAggroTimer = MathUtils.clamp(deAggroTimer + delta, 0.0F, DEAGRRO_PERIOD);
-    }
-
-    /**
-     * Differentially start the deAggro timer. If the guard is alerted by a camera,
-     * set the
-     * timer to ALERT_DEAGRRO_PERIOD. Otherwise, set it to DEAGRRO_PERIOD.
-     * ALERT_DEAGRRO_PERIOD is longer than DEAGRRO_PERIOD.
-     */
-    public void startDeAggroTimer() {
-        this.deAggroTimer = isCameraAlerted() ? ALERT_DEAGRRO_PERIOD : DEAGRRO_PERIOD;
+    /** Sets whether the meter shows that the guard is following up a meow. */
+    public void setCurious(boolean curious) {
+        this.curious = curious;
     }
 
     public Vector2[] getPatrolPoints() {
@@ -303,35 +244,6 @@ public class Guard extends Enemy {
         setPatrolPoints(vec2s);
     }
 
-    public boolean isCameraAlerted() {
-        return cameraAlerted;
-    }
-
-    public void setCameraAlerted(boolean value) {
-        cameraAlerted = value;
-    }
-
-    /** If a guard is "agroed", it is currently chasing a player */
-    public boolean isAgroed() {
-        return isChasing;
-    }
-
-    public void setSeesPlayer(boolean seesPlayer) {
-        this.seesPlayer = seesPlayer;
-    }
-
-    public boolean isSeesPlayer() {
-        return seesPlayer;
-    }
-
-    public void setSeenPlayer(PlayableAvatar seenPlayer) {
-        this.seenPlayer = seenPlayer;
-    }
-
-    public PlayableAvatar getSeenPlayer() {
-        return seenPlayer;
-    }
-
     public void setLookingAround(boolean lookingAround) {
         isLookingAround = lookingAround;
     }
@@ -350,40 +262,19 @@ public class Guard extends Enemy {
         return movementDirection;
     }
 
-    public void setTarget(Vector2 target) {
-
-        this.target = target;
-    }
-
     public void think(Vector2 movementDirection, Vector2 targetPosition) {
         this.movementDirection = movementDirection;
         this.targetPosition = targetPosition;
     }
 
-    public void setAgroed(boolean agroed) {
-        isChasing = agroed;
-    }
-
-    public void setMeow(boolean meowed) {
-        this.meowed = meowed;
-    }
-
     public void resetState() {
         // Reset all state-related fields
-        setAgroed(false);
-        setSusLevel(0);
-        setAggroTarget(null);
-        setTarget(null);
-        setSeesPlayer(false);
-        setSeenPlayer(null);
-        setCameraAlerted(false);
-        setMeow(false);
+        setSuspicion(0);
+        setCurious(false);
         setInkBlinded(false);
-        setInkBlindTimer(0);
         setIdle(getPatrolPoints().length <= 1);
         setLookingAround(false);
         setInMeowRadius(false);  // Reset the new flag
-        deAggroTimer = 0;
     }
 
     public int calculateSusIncrease(Vector2 playerPosition) {
@@ -414,16 +305,6 @@ public class Guard extends Enemy {
         return baseSuspicionIncrease;
     }
 
-    /**
-     * If a guard is "meowed", it is currently patrolling to the spot of the meow,
-     * but they are not chasing a player. When either alerted by a security camera,
-     * or if they see a player, or if they reach the spot of the meow, the guard
-     * leaves the "meowed" state
-     */
-    public boolean isMeowed() {
-        return meowed;
-    }
-
     public void setIdle(boolean idle) {
         isIdle = idle;
     }
@@ -432,26 +313,6 @@ public class Guard extends Enemy {
         return isIdle;
     }
 
-    public PlayableAvatar getAggroTarget() {
-        return aggroTarget;
-    }
-
-    public void setAggroTarget(PlayableAvatar target) {
-        aggroTarget = target;
-    }
-
-    /**
-     * This timer is used to determine how long a guard should chase a player
-     * before giving up and returning to their patrol route
-     */
-    public int getChaseTimer() {
-        return chaseTimer;
-    }
-
-    public void setChaseTimer(int value) {
-        chaseTimer = value;
-    }
-
     public float getFov() {
         return tempFov;
     }
@@ -531,14 +392,6 @@ public class Guard extends Enemy {
 
     }
 
-    /** The value of target is only valid if guard is agroed or is "meowed" */
-    public Vector2 getTarget() {
-        if (meowed == true) {
-            // System.out.print("Guard is getting meow target");
-        }
-        return target;
-    }
-
     public void draw(SpriteBatch batch) {
         super.draw(batch);
         // Draw the ink detection obstacle in debug mode
@@ -562,8 +415,8 @@ public class Guard extends Enemy {
         }
 
         float PIXEL_PER_WORLD_UNIT = getObstacle().getPhysicsUnits();
-        float guardXPixel = getPosition().x * PIXEL_PER_WORLD_UNIT;
-        float guardYPixel = getPosition().y * PIXEL_PER_WORLD_UNIT;
+        float guardXPixel = getDrawPosition().x * PIXEL_PER_WORLD_UNIT;
+        float guardYPixel = getDrawPosition().y * PIXEL_PER_WORLD_UNIT;
 
         float SCALE = 0.2f * (PIXEL_PER_WORLD_UNIT / BASELINE_PX);
         float X_PIXEL_OFFSET = (-80f * SCALE);
@@ -580,11 +433,11 @@ public class Guard extends Enemy {
             return;
         }
 
-        if (susLevel == 0 && !isMeowed()) {
+        if (suspicion == 0 && !curious) {
             return;
         }
 
-        if (isMeowed()) {
+        if (curious) {
             batch.draw(
                 Guard.SUSPICION_METER_CURIOUS,
                 guardXPixel + getXPixelOffset(),
@@ -635,7 +488,7 @@ public class Guard extends Enemy {
 
         AnimationState guardState = animationController.getCurrentState();
 
-        if (isMeowed()) {
+        if (curious) {
             if (guardState == AnimationState.WALK_UP) {
                 return (-95f * SCALE);
             }
@@ -680,19 +533,6 @@ public class Guard extends Enemy {
         this.inkBlinded = blinded;
     }
 
-    public void setInkBlindTimer(float duration) {
-        this.inkBlindTimer = duration;
-    }
-
-    public void updateInkBlindTimer(float dt) {
-        if (inkBlinded) {
-            inkBlindTimer -= dt;
-            if (inkBlindTimer <= 0) {
-                inkBlinded = false;
-            }
-        }
-    }
-
     public void setTempViewDistance(float distance) {
         this.tempViewDistance = distance;
     }
@@ -710,8 +550,8 @@ public class Guard extends Enemy {
             return; // No valid frames
         }
 
-        // Map suspicion level (0 to maxSusLevel) to frame index (0 to totalFrames)
-        int frameIndex = Math.round((susLevel / maxSusLevel) * totalFrames);
+        // Map suspicion (0 to 1) to frame index (0 to totalFrames)
+        int frameIndex = Math.round(suspicion * totalFrames);
 
         // Ensure frame index is within valid range
         frameIndex = MathUtils.clamp(frameIndex, 0, totalFrames);
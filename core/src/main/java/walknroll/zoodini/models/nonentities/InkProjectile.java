@@ -231,8 +231,8 @@ public class InkProjectile extends ZoodiniSprite {
     @Override
     public void draw(SpriteBatch batch) {
         if (this.obstacle != null && this.mesh != null) {
-            float x = this.obstacle.getX();
-            float y = this.obstacle.getY();
+            float x = getDrawPosition().x;
+            float y = getDrawPosition().y;
             float a = this.obstacle.getAngle();
             float u = this.obstacle.getPhysicsUnits();
 
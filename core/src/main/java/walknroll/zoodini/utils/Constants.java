@@ -1,8 +1,22 @@
 package walknroll.zoodini.utils;
 
+import walknroll.zoodini.controllers.aitools.VisionBackend;
+
 public class Constants {
     public static final float CAMERA_INTERPOLATION_DURATION = 0.75f;
     public static final boolean DEBUG = false;
     public static final boolean UNLOCK_ALL = true;
     public static final boolean INVINCIBLE = false;
+    /** Microseconds per frame the AI may spend searching for paths */
+    public static final long PATH_BUDGET_MICROS = 500;
+    /** Background threads for path searches; fewer are used if the machine lacks spare cores */
+    public static final int PATH_WORKER_THREADS = 2;
+    /** Navigation tiles per map tile; a level's Settings object may override it with "density" */
+    public static final int NAV_DENSITY = 1;
+    /** Guards further than this from both avatars and off screen run their AI less often, in world units */
+    public static final float AI_LOD_RADIUS = 12f;
+    /** Frames between AI updates of guards outside {@link #AI_LOD_RADIUS} */
+    public static final int AI_LOD_INTERVAL = 4;
+    /** How vision cones find the walls that block them; a level's Settings object may override it with "vision" */
+    public static final VisionBackend VISION_BACKEND = VisionBackend.SWEEP;
 }
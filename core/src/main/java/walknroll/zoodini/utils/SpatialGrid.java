@@ -0,0 +1,203 @@
+package walknroll.zoodini.utils;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * Uniform grid over a level for finding the entities near a point or inside a box.
+ *
+ * The level is divided into square cells and every entity is filed under the cell its
+ * position falls in, so a query only looks at the entities in the cells overlapping the
+ * queried area instead of at every entity of the level. Entities are treated as points;
+ * to find entities that overlap an area, widen the area by their size. Positions outside
+ * the grid are filed under the nearest border cell.
+ *
+ * Moving an entity with {@link #update} only touches the cells when it crosses into
+ * another cell, so keeping the grid up to date costs a few comparisons per entity.
+ *
+ * @param <T> The type of entity stored
+ */
+public class SpatialGrid<T> {
+    private final float originX;
+    private final float originY;
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    /** Ids of the entities in each cell, indexed by x * rows + y */
+    private final IntArray[] cells;
+
+    /** Entities, their cells and positions, indexed by id */
+    private final Array<T> items = new Array<>();
+    private final IntArray cellOf = new IntArray();
+    private final FloatArray xs = new FloatArray();
+    private final FloatArray ys = new FloatArray();
+    private final ObjectIntMap<T> ids = new ObjectIntMap<>();
+
+    /**
+     * @param bounds   The area the entities are in, in world units
+     * @param cellSize Width and height of a cell, in world units
+     */
+    public SpatialGrid(Rectangle bounds, float cellSize) {
+        this.originX = bounds.x;
+        this.originY = bounds.y;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(bounds.width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(bounds.height / cellSize));
+        this.cells = new IntArray[columns * rows];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new IntArray(false, 4);
+        }
+    }
+
+    /**
+     * Sets the position of an entity, adding it to the grid if it is not in it yet.
+     *
+     * @param item The entity
+     * @param x    The entity's x position, in world units
+     * @param y    The entity's y position, in world units
+     */
+    public void update(T item, float x, float y) {
+        int cell = cellAt(x, y);
+        int id = ids.get(item, -1);
+        if (id < 0) {
+            id = items.size;
+            ids.put(item, id);
+            items.add(item);
+            cellOf.add(cell);
+            xs.add(x);
+            ys.add(y);
+            cells[cell].add(id);
+            return;
+        }
+        xs.set(id, x);
+        ys.set(id, y);
+        int old = cellOf.get(id);
+        if (old != cell) {
+            cells[old].removeValue(id);
+            cells[cell].add(id);
+            cellOf.set(id, cell);
+        }
+    }
+
+    /** Removes an entity from the grid, if it is in it. */
+    public void remove(T item) {
+        int id = ids.remove(item, -1);
+        if (id < 0) {
+            return;
+        }
+        cells[cellOf.get(id)].removeValue(id);
+        // Move the last entity into the freed id
+        int last = items.size - 1;
+        if (id != last) {
+            T moved = items.get(last);
+            IntArray cell = cells[cellOf.get(last)];
+            cell.set(cell.indexOf(last), id);
+            items.set(id, moved);
+            cellOf.set(id, cellOf.get(last));
+            xs.set(id, xs.get(last));
+            ys.set(id, ys.get(last));
+            ids.put(moved, id);
+        }
+        items.pop();
+        cellOf.pop();
+        xs.pop();
+        ys.pop();
+    }
+
+    /** Removes every entity from the grid. */
+    public void clear() {
+        for (IntArray cell : cells) {
+            cell.clear();
+        }
+        items.clear();
+        cellOf.clear();
+        xs.clear();
+        ys.clear();
+        ids.clear();
+    }
+
+    /**
+     * Appends the entities of the given type within a radius of a point to out.
+     *
+     * @param x      The x position of the centre, in world units
+     * @param y      The y position of the centre, in world units
+     * @param radius The radius, in world units; entities exactly at this distance count
+     * @param type   The type of entity to find
+     * @param out    The array to append the entities to
+     * @return out, for chaining
+     */
+    public <E extends T> Array<E> queryRadius(float x, float y, float radius, Class<E> type, Array<E> out) {
+        float radius2 = radius * radius;
+        int startX = column(x - radius);
+        int endX = column(x + radius);
+        int startY = row(y - radius);
+        int endY = row(y + radius);
+        for (int cx = startX; cx <= endX; cx++) {
+            for (int cy = startY; cy <= endY; cy++) {
+                IntArray cell = cells[cx * rows + cy];
+                for (int i = 0; i < cell.size; i++) {
+                    int id = cell.get(i);
+                    float dx = xs.get(id) - x;
+                    float dy = ys.get(id) - y;
+                    if (dx * dx + dy * dy <= radius2) {
+                        add(id, type, out);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Appends the entities of the given type inside a box to out.
+     *
+     * @param area The box, in world units; entities on its border count
+     * @param type The type of entity to find
+     * @param out  The array to append the entities to
+     * @return out, for chaining
+     */
+    public <E extends T> Array<E> queryRect(Rectangle area, Class<E> type, Array<E> out) {
+        float right = area.x + area.width;
+        float top = area.y + area.height;
+        int startX = column(area.x);
+        int endX = column(right);
+        int startY = row(area.y);
+        int endY = row(top);
+        for (int cx = startX; cx <= endX; cx++) {
+            for (int cy = startY; cy <= endY; cy++) {
+                IntArray cell = cells[cx * rows + cy];
+                for (int i = 0; i < cell.size; i++) {
+                    int id = cell.get(i);
+                    float px = xs.get(id);
+                    float py = ys.get(id);
+                    if (px >= area.x && px <= right && py >= area.y && py <= top) {
+                        add(id, type, out);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private <E extends T> void add(int id, Class<E> type, Array<E> out) {
+        T item = items.get(id);
+        if (type.isInstance(item)) {
+            out.add(type.cast(item));
+        }
+    }
+
+    private int cellAt(float x, float y) {
+        return column(x) * rows + row(y);
+    }
+
+    private int column(float x) {
+        return Math.min(Math.max((int) Math.floor((x - originX) / cellSize), 0), columns - 1);
+    }
+
+    private int row(float y) {
+        return Math.min(Math.max((int) Math.floor((y - originY) / cellSize), 0), rows - 1);
+    }
+}
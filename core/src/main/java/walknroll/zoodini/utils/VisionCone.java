@@ -23,6 +23,8 @@ import edu.cornell.gdiac.math.PolyFactory;
 import edu.cornell.gdiac.physics2.Obstacle;
 import edu.cornell.gdiac.physics2.WheelObstacle;
 import java.util.Arrays;
+import walknroll.zoodini.controllers.aitools.ShadowcastVision;
+import walknroll.zoodini.controllers.aitools.VisibilitySweep;
 import walknroll.zoodini.models.GameLevel;
 
 public class VisionCone implements RayCastCallback{
@@ -49,6 +51,26 @@ public class VisionCone implements RayCastCallback{
 
     private boolean isVisible = false; // Flag to control visibility
 
+    /** Finds how far the rays reach on the tile grid; null to cast them with Box2D */
+    private ShadowcastVision shadowcaster;
+    /** Direction and reach of each ray, for the shadowcaster */
+    private float[] rayDirX;
+    private float[] rayDirY;
+    private float[] rayReach;
+    /** Builds the exact visible polygon from the walls; null to cast a fixed fan of rays */
+    private VisibilitySweep sweep;
+    /** Number of boundary points the sweep's polygon was last triangulated for */
+    private int sweepPoints = -1;
+
+    /** Whether the polygon is out of date and must be rebuilt before it is used */
+    private boolean dirty = true;
+    /** Origin, facing in degrees, radius and wideness the polygon was last built with */
+    private float builtX;
+    private float builtY;
+    private float builtFacing;
+    private float builtRadius;
+    private float builtWideness;
+
     public Vector2 getPosition(){
         return this.origin;
     }
@@ -64,6 +86,75 @@ public class VisionCone implements RayCastCallback{
     public void setVisibility(boolean v){
         isVisible = v;
     }
+    public boolean isVisible(){
+        return isVisible;
+    }
+    public float getRadius(){
+        return radius;
+    }
+
+    /**
+     * Marks the polygon as out of date, e.g. because a wall in reach has changed. Until
+     * the next {@link #update}, the cone contains nothing and is not drawn.
+     */
+    public void invalidate(){
+        dirty = true;
+    }
+
+    /**
+     * Returns whether the polygon was built from where the body is now, facing the same
+     * way, and nothing has invalidated it since. Such a cone need not be updated.
+     */
+    public boolean isCurrent(){
+        if (dirty || body == null) {
+            return false;
+        }
+        Vector2 position = body.getPosition();
+        return position.x == builtX && position.y == builtY
+            && body.getAngle() * MathUtils.radiansToDegrees + facingAngle == builtFacing
+            && radius == builtRadius && wideness == builtWideness;
+    }
+
+    /**
+     * Chooses how this cone finds what blocks its rays. With a shadowcaster the rays are
+     * cut off by the opaque tiles of its grid, which costs far less than a Box2D raycast
+     * per ray; with null they are cast against the walls and doors in the world.
+     */
+    public void setShadowcaster(ShadowcastVision shadowcaster){
+        setSweep(null);
+        this.shadowcaster = shadowcaster;
+        dirty = true;
+        if (shadowcaster != null && rayDirX == null) {
+            rayDirX = new float[numRays];
+            rayDirY = new float[numRays];
+            rayReach = new float[numRays];
+        }
+    }
+
+    public ShadowcastVision getShadowcaster(){
+        return shadowcaster;
+    }
+
+    /**
+     * Makes this cone an exact visibility polygon built by the given sweep instead of a
+     * fan of {@code numRays} rays, or goes back to the fan with null. The polygon then
+     * has as many points as the walls around it need. Replaces any shadowcaster.
+     */
+    public void setSweep(VisibilitySweep sweep){
+        if (sweep != null) {
+            shadowcaster = null;
+        } else if (this.sweep != null) {
+            // The fan needs its fixed layout back
+            cone = createPolygon(numRays, origin, radius, facingAngle, wideness);
+            sweepPoints = -1;
+        }
+        this.sweep = sweep;
+        dirty = true;
+    }
+
+    public VisibilitySweep getSweep(){
+        return sweep;
+    }
 
 
     /**
@@ -125,6 +216,10 @@ public class VisionCone implements RayCastCallback{
     }
 
     public boolean contains(Obstacle obs){
+        if(dirty){
+            // The polygon is stale; whoever skipped the update knew nothing was in reach
+            return false;
+        }
         WheelObstacle obstacle = (WheelObstacle) obs;
         Vector2 center = obstacle.getPosition();
         float radius = (obstacle.getRadius() / 1.414f) * 0.5f; //hardcoded offset
@@ -156,7 +251,7 @@ public class VisionCone implements RayCastCallback{
     public float reportRayFixture(Fixture fixture, Vector2 point, Vector2 normal, float fraction) {
         boolean collide = (this.exclude & fixture.getFilterData().categoryBits) != 0;
         if(fraction < closestFraction
-            && !body.getFixtureList().contains(fixture,true)
+            && fixture.getBody() != body
             && collide)
         {
             closestFraction = fraction;
@@ -178,6 +273,47 @@ public class VisionCone implements RayCastCallback{
         origin = body.getPosition();
         int k = 0;
 
+        builtX = origin.x;
+        builtY = origin.y;
+        builtFacing = body.getAngle() * MathUtils.radiansToDegrees + facingAngle;
+        builtRadius = radius;
+        builtWideness = wideness;
+        dirty = false;
+
+        if (sweep != null) {
+            int points = sweep.build(origin.x, origin.y, radius, builtFacing, wideness, cone.vertices);
+            if (points != sweepPoints) {
+                // Triangle fan around the origin, which comes after the boundary points
+                ShortArray indices = cone.indices;
+                indices.clear();
+                for (int i = 0; i < points - 1; ++i) {
+                    indices.add((short) i);
+                    indices.add((short) (i + 1));
+                    indices.add((short) points);
+                }
+                sweepPoints = points;
+            }
+            return;
+        }
+
+        if (shadowcaster != null) {
+            for (int i = 0; i < numRays; ++i) {
+                float degrees = body.getAngle() * MathUtils.radiansToDegrees + facingAngle;
+                degrees += (i - (numRays - 1) / 2f) * coef;
+                float rads = MathUtils.degreesToRadians * degrees;
+                rayDirX[i] = MathUtils.cos(rads);
+                rayDirY[i] = MathUtils.sin(rads);
+            }
+            shadowcaster.cast(origin.x, origin.y, radius, rayDirX, rayDirY, numRays, rayReach);
+            for (int i = 0; i < numRays; ++i) {
+                cone.vertices.items[k++] = origin.x + rayDirX[i] * rayReach[i];
+                cone.vertices.items[k++] = origin.y + rayDirY[i] * rayReach[i];
+            }
+            cone.vertices.items[k++] = origin.x;
+            cone.vertices.items[k++] = origin.y;
+            return;
+        }
+
         for (int i = 0; i < numRays; ++i) {
             float degrees = body.getAngle() * MathUtils.radiansToDegrees + facingAngle;
             degrees += (i - (numRays - 1) / 2f) * coef;
@@ -198,9 +334,20 @@ public class VisionCone implements RayCastCallback{
         cone.vertices.items[k++] = origin.y;
     }
 
+    /** Shift of the drawn cone from where it was cast, in world units */
+    private final Vector2 drawOffset = new Vector2();
+
+    /**
+     * Shifts the drawn cone, so that it stays with a body that is drawn between physics
+     * steps. The cone is still cast from the body's physics position.
+     */
+    public void setDrawOffset(float x, float y) {
+        drawOffset.set(x, y);
+    }
+
     Affine2 cache = new Affine2();
     public void draw(SpriteBatch batch, Camera camera){
-        if(!isVisible){
+        if(!isVisible || dirty){
             return;
         }
 //        Gdx.gl.glEnable(GL20.GL_BLEND);
@@ -208,6 +355,7 @@ public class VisionCone implements RayCastCallback{
         batch.setColor(c); //rgba
         cache.idt();
         cache.scale(units,units);
+        cache.translate(drawOffset.x, drawOffset.y);
         batch.fill(cone, cache);
      //   Gdx.gl.glDisable(GL20.GL_BLEND);
     }
@@ -17,6 +17,14 @@ import edu.cornell.gdiac.physics2.ObstacleSprite;
 public class ZoodiniSprite extends ObstacleSprite implements Comparable<ZoodiniSprite> {
     private boolean drawingEnabled = true;
 
+    /** Moves longer than this between two physics steps are drawn as jumps, in world units */
+    private static final float SNAP_DISTANCE = 1.0f;
+    /** Position at the start of the last physics step, for drawing in between steps */
+    private final Vector2 previousPosition = new Vector2();
+    /** Position to draw at, between the previous and the current position */
+    private final Vector2 drawPosition = new Vector2();
+    private boolean interpolated;
+
     public ZoodiniSprite(){
         super();
     }
@@ -56,6 +64,39 @@ public class ZoodiniSprite extends ObstacleSprite implements Comparable<ZoodiniS
         this.drawingEnabled = value;
     }
 
+    /**
+     * Remembers the current position as the one the next physics step starts from.
+     * Call this before every physics step for sprites drawn with {@link #interpolate}.
+     */
+    public void savePreviousPosition() {
+        previousPosition.set(obstacle.getPosition());
+    }
+
+    /**
+     * Places the sprite between its position at the start of the last physics step and
+     * its current position, so that it moves smoothly when frames and steps do not line
+     * up. Teleports are not smoothed.
+     *
+     * @param alpha How far the time drawn is past the last step, as a fraction of a step
+     */
+    public void interpolate(float alpha) {
+        Vector2 position = obstacle.getPosition();
+        if (previousPosition.dst2(position) > SNAP_DISTANCE * SNAP_DISTANCE) {
+            drawPosition.set(position);
+        } else {
+            drawPosition.set(previousPosition).lerp(position, alpha);
+        }
+        interpolated = true;
+    }
+
+    /**
+     * Returns where to draw the sprite, in world units: the position set by the last
+     * {@link #interpolate}, or the physics position if it is never interpolated.
+     */
+    public Vector2 getDrawPosition() {
+        return interpolated ? drawPosition : obstacle.getPosition();
+    }
+
     @Override
     public int compareTo(ZoodiniSprite o) {
 //        Vector2 position = this.obstacle.getPosition();